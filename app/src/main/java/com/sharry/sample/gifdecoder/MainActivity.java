@@ -1,12 +1,16 @@
 package com.sharry.sample.gifdecoder;
 
+import android.content.Context;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.PowerManager;
 import android.view.View;
 import android.widget.ImageView;
 
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.sharry.lib.gif.FrameSequenceDrawable;
 import com.sharry.sample.gifdecoder.extension.GlideApp;
 
 /**
@@ -38,4 +42,17 @@ public class MainActivity extends AppCompatActivity {
             }
         });
     }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // 省电模式下限制 GIF 的帧率
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            PowerManager pm = (PowerManager) getSystemService(Context.POWER_SERVICE);
+            boolean powerSaveMode = pm != null && pm.isPowerSaveMode();
+            FrameSequenceDrawable.setDefaultMaxFrameRate(powerSaveMode
+                    ? FrameSequenceDrawable.FRAME_RATE_BATTERY_SAVER
+                    : FrameSequenceDrawable.FRAME_RATE_UNLIMITED);
+        }
+    }
 }
@@ -0,0 +1,41 @@
+package com.sharry.sample.gifdecoder.extension;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.ImageHeaderParser;
+import com.bumptech.glide.load.ImageHeaderParserUtils;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.sharry.lib.gif.GifDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 将 GIF 的 ByteBuffer 转为 FrameSequenceDrawable
+ * <p>
+ * Glide 的磁盘缓存会以 MappedByteBuffer 的形式给出, Native 层直接读取其地址, 无需拷贝
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class ByteBufferGifResourceDecoder extends GifResourceDecoder<ByteBuffer> {
+
+    ByteBufferGifResourceDecoder(List<ImageHeaderParser> parsers, BitmapPool bitmapPool, ArrayPool arrayPool) {
+        super(parsers, bitmapPool, arrayPool);
+    }
+
+    @Override
+    public boolean handles(@NonNull ByteBuffer source, @NonNull Options options) throws IOException {
+        return ImageHeaderParserUtils.getType(mParsers, source) == ImageHeaderParser.ImageType.GIF;
+    }
+
+    @Override
+    GifDecoder decodeGif(@NonNull ByteBuffer source) {
+        return GifDecoder.decodeByteBuffer(source);
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.sharry.sample.gifdecoder.extension;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.ImageHeaderParser;
+import com.bumptech.glide.load.ImageHeaderParserUtils;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.sharry.lib.gif.GifDecoder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * 将 GIF 的 File 转为 FrameSequenceDrawable
+ * <p>
+ * 由 Native 层直接打开文件读取, 不经过 Java 的 InputStream
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class FileGifResourceDecoder extends GifResourceDecoder<File> {
+
+    FileGifResourceDecoder(List<ImageHeaderParser> parsers, BitmapPool bitmapPool, ArrayPool arrayPool) {
+        super(parsers, bitmapPool, arrayPool);
+    }
+
+    @Override
+    public boolean handles(@NonNull File source, @NonNull Options options) throws IOException {
+        InputStream is = null;
+        try {
+            is = new FileInputStream(source);
+            return ImageHeaderParserUtils.getType(mParsers, is, mArrayPool) == ImageHeaderParser.ImageType.GIF;
+        } finally {
+            if (is != null) {
+                is.close();
+            }
+        }
+    }
+
+    @Override
+    GifDecoder decodeGif(@NonNull File source) {
+        return GifDecoder.decodeFilePath(source.getAbsolutePath());
+    }
+
+}
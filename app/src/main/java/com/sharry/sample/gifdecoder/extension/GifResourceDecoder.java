@@ -1,34 +1,46 @@
 package com.sharry.sample.gifdecoder.extension;
 
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import com.bumptech.glide.load.ImageHeaderParser;
 import com.bumptech.glide.load.Options;
 import com.bumptech.glide.load.ResourceDecoder;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
 import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.DownsampleStrategy;
 import com.bumptech.glide.load.resource.drawable.DrawableResource;
 import com.sharry.lib.gif.BuildConfig;
 import com.sharry.lib.gif.FrameSequenceDrawable;
 import com.sharry.lib.gif.GifDecoder;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.List;
 
 /**
  * Define a GIF Decoder.
+ * <p>
+ * 子类只需要负责判断数据源是否为 GIF, 以及将数据源解析为 {@link GifDecoder}
  *
  * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
  * @version 1.0
  * @since 2019-12-22
  */
-public class GifResourceDecoder implements ResourceDecoder<InputStream, FrameSequenceDrawable> {
+public abstract class GifResourceDecoder<T> implements ResourceDecoder<T, FrameSequenceDrawable> {
 
     private static final String TAG = GifResourceDecoder.class.getSimpleName();
+
+    final List<ImageHeaderParser> mParsers;
+    final ArrayPool mArrayPool;
     private final FrameSequenceDrawable.BitmapProvider mProvider;
 
-    GifResourceDecoder(final BitmapPool bitmapPool) {
+    GifResourceDecoder(List<ImageHeaderParser> parsers, final BitmapPool bitmapPool, ArrayPool arrayPool) {
+        this.mParsers = parsers;
+        this.mArrayPool = arrayPool;
         this.mProvider = new FrameSequenceDrawable.BitmapProvider() {
             @Override
             public Bitmap acquireBitmap(int minWidth, int minHeight) {
@@ -42,25 +54,31 @@ public class GifResourceDecoder implements ResourceDecoder<InputStream, FrameSeq
         };
     }
 
-    @Override
-    public boolean handles(@NonNull InputStream source, @NonNull Options options) throws IOException {
-        return true;
-    }
-
     /**
-     * 将 GIF 的 InputStream 转为 GifDrawableResource
+     * 将 GIF 的数据源转为 GifDrawableResource
      */
     @Override
-    public GifDrawableResource decode(@NonNull InputStream source, int width, int height, @NonNull Options options) throws IOException {
-        GifDecoder decoder = GifDecoder.decodeStream(source);
+    public GifDrawableResource decode(@NonNull T source, int width, int height, @NonNull Options options) throws IOException {
+        GifDecoder decoder = decodeGif(source);
         if (decoder == null) {
             return null;
         }
-        int inSampleSize = calcSampleSize(decoder.getWidth(), decoder.getHeight(), width, height);
-        FrameSequenceDrawable drawable = new FrameSequenceDrawable(decoder, mProvider, inSampleSize);
+        // centerCrop 时只合成目标尺寸内可见的区域, 帧 Bitmap 也随之缩小
+        Rect crop = new Rect(0, 0, decoder.getWidth(), decoder.getHeight());
+        if (width > 0 && height > 0 && options.get(DownsampleStrategy.OPTION) == DownsampleStrategy.CENTER_OUTSIDE) {
+            crop = FrameSequenceDrawable.getCenterCropRect(decoder.getWidth(), decoder.getHeight(), width, height);
+        }
+        int inSampleSize = calcSampleSize(crop.width(), crop.height(), width, height);
+        FrameSequenceDrawable drawable = new FrameSequenceDrawable(decoder, mProvider, inSampleSize, crop);
         return new GifDrawableResource(drawable);
     }
 
+    /**
+     * 将数据源解析为 GifDecoder
+     */
+    @Nullable
+    abstract GifDecoder decodeGif(@NonNull T source) throws IOException;
+
     private int calcSampleSize(int sourceWidth, int sourceHeight, int requestedWidth, int requestedHeight) {
         int exactSampleSize = Math.min(sourceWidth / requestedWidth,
                 sourceHeight / requestedHeight);
@@ -81,7 +99,7 @@ public class GifResourceDecoder implements ResourceDecoder<InputStream, FrameSeq
     /**
      * 创建一个用于加载 GIF 的 Glide 的 Resource
      */
-    private static class GifDrawableResource extends DrawableResource<FrameSequenceDrawable> {
+    static class GifDrawableResource extends DrawableResource<FrameSequenceDrawable> {
 
         private GifDrawableResource(FrameSequenceDrawable drawable) {
             super(drawable);
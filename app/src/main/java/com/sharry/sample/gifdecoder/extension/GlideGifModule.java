@@ -1,27 +1,68 @@
 package com.sharry.sample.gifdecoder.extension;
 
 import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 
 import androidx.annotation.NonNull;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.Registry;
 import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.ImageHeaderParser;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
 import com.bumptech.glide.module.AppGlideModule;
 import com.sharry.lib.gif.FrameSequenceDrawable;
 
+import java.io.File;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 @GlideModule
 public class GlideGifModule extends AppGlideModule {
 
     @Override
     public void registerComponents(@NonNull Context context, @NonNull Glide glide, @NonNull Registry registry) {
-        // 注册一个 GifResourceDecoder, 用于将 GIF 的 InputStream 转为 FrameSequenceDrawable
+        List<ImageHeaderParser> parsers = registry.getImageHeaderParsers();
+        BitmapPool bitmapPool = glide.getBitmapPool();
+        ArrayPool arrayPool = glide.getArrayPool();
+        // 注册 GIF 的 ResourceDecoder, 用于将 GIF 的数据源转为 FrameSequenceDrawable
+        // 磁盘缓存的数据会以 ByteBuffer/File 的形式给出, 可直接在 Native 层读取, InputStream 作为兜底
         registry.prepend(
                 Registry.BUCKET_GIF,
                 InputStream.class, FrameSequenceDrawable.class,
-                new GifResourceDecoder(glide.getBitmapPool())
+                new StreamGifResourceDecoder(parsers, bitmapPool, arrayPool)
+        );
+        registry.prepend(
+                Registry.BUCKET_GIF,
+                ParcelFileDescriptor.class, FrameSequenceDrawable.class,
+                new ParcelFileDescriptorGifResourceDecoder(parsers, bitmapPool, arrayPool)
+        );
+        registry.prepend(
+                Registry.BUCKET_GIF,
+                File.class, FrameSequenceDrawable.class,
+                new FileGifResourceDecoder(parsers, bitmapPool, arrayPool)
+        );
+        registry.prepend(
+                Registry.BUCKET_GIF,
+                ByteBuffer.class, FrameSequenceDrawable.class,
+                new ByteBufferGifResourceDecoder(parsers, bitmapPool, arrayPool)
+        );
+        // 打包在 APK 中的资源与 asset, 由 Native 层直接读取 APK 的内存映射
+        registry.prepend(
+                Registry.BUCKET_GIF,
+                PackagedGif.class, FrameSequenceDrawable.class,
+                new PackagedGifResourceDecoder(parsers, bitmapPool, arrayPool)
+        );
+        registry.prepend(
+                Integer.class, PackagedGif.class,
+                new PackagedGifModelLoader.ResourceFactory(context.getResources())
+        );
+        registry.prepend(
+                Uri.class, PackagedGif.class,
+                new PackagedGifModelLoader.AssetUriFactory(context.getAssets())
         );
     }
 
@@ -0,0 +1,62 @@
+package com.sharry.sample.gifdecoder.extension;
+
+import android.content.res.AssetManager;
+import android.content.res.Resources;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.sharry.lib.gif.GifDecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 打包在 APK 中的 GIF, 资源或 asset
+ * <p>
+ * 由 {@link GifDecoder#decodeResource} 与 {@link GifDecoder#decodeAsset} 直接读取 APK 的内存映射, 不经过 Java 拷贝
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public final class PackagedGif {
+
+    private final Resources mResources;
+    private final int mResourceId;
+    private final AssetManager mAssets;
+    private final String mAssetPath;
+
+    static PackagedGif ofResource(@NonNull Resources resources, int resourceId) {
+        return new PackagedGif(resources, resourceId, null, null);
+    }
+
+    static PackagedGif ofAsset(@NonNull AssetManager assets, @NonNull String assetPath) {
+        return new PackagedGif(null, 0, assets, assetPath);
+    }
+
+    private PackagedGif(Resources resources, int resourceId, AssetManager assets, String assetPath) {
+        this.mResources = resources;
+        this.mResourceId = resourceId;
+        this.mAssets = assets;
+        this.mAssetPath = assetPath;
+    }
+
+    /**
+     * 打开数据流, 仅用于读取文件头
+     */
+    @NonNull
+    InputStream open() throws IOException {
+        return mAssets != null ? mAssets.open(mAssetPath) : mResources.openRawResource(mResourceId);
+    }
+
+    /**
+     * 将 GIF 解析为 GifDecoder
+     */
+    @Nullable
+    GifDecoder decode() {
+        return mAssets != null ? GifDecoder.decodeAsset(mAssets, mAssetPath)
+                : GifDecoder.decodeResource(mResources, mResourceId);
+    }
+
+}
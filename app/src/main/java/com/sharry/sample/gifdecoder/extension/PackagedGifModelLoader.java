@@ -0,0 +1,154 @@
+package com.sharry.sample.gifdecoder.extension;
+
+import android.content.res.AssetManager;
+import android.content.res.Resources;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.util.List;
+
+/**
+ * 将资源 id 与 "file:///android_asset/" 的 Uri 转为 {@link PackagedGif}
+ * <p>
+ * Glide 默认会将其打开为 InputStream, 再由 {@link StreamGifResourceDecoder} 分块拷贝到 Native 层
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public abstract class PackagedGifModelLoader<Model> implements ModelLoader<Model, PackagedGif> {
+
+    private static final String ASSET_PATH_SEGMENT = "android_asset";
+    private static final String ASSET_PATH_PREFIX = "/" + ASSET_PATH_SEGMENT + "/";
+
+    @Override
+    public LoadData<PackagedGif> buildLoadData(@NonNull Model model, int width, int height, @NonNull Options options) {
+        return new LoadData<>(new ObjectKey(model), new PackagedGifFetcher(toPackagedGif(model)));
+    }
+
+    /**
+     * 将 model 转为 PackagedGif, 只是记录位置, 解析在 ResourceDecoder 中进行
+     */
+    @NonNull
+    abstract PackagedGif toPackagedGif(@NonNull Model model);
+
+    /**
+     * 加载 R.drawable, R.raw 等资源 id
+     */
+    public static class ResourceFactory implements ModelLoaderFactory<Integer, PackagedGif> {
+
+        private final Resources mResources;
+
+        ResourceFactory(Resources resources) {
+            this.mResources = resources;
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<Integer, PackagedGif> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new PackagedGifModelLoader<Integer>() {
+                @Override
+                public boolean handles(@NonNull Integer model) {
+                    return true;
+                }
+
+                @NonNull
+                @Override
+                PackagedGif toPackagedGif(@NonNull Integer model) {
+                    return PackagedGif.ofResource(mResources, model);
+                }
+            };
+        }
+
+        @Override
+        public void teardown() {
+            // Do nothing.
+        }
+    }
+
+    /**
+     * 加载 "file:///android_asset/" 开头的 Uri
+     */
+    public static class AssetUriFactory implements ModelLoaderFactory<Uri, PackagedGif> {
+
+        private final AssetManager mAssets;
+
+        AssetUriFactory(AssetManager assets) {
+            this.mAssets = assets;
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<Uri, PackagedGif> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new PackagedGifModelLoader<Uri>() {
+                @Override
+                public boolean handles(@NonNull Uri model) {
+                    List<String> segments = model.getPathSegments();
+                    return "file".equals(model.getScheme()) && segments.size() > 1
+                            && ASSET_PATH_SEGMENT.equals(segments.get(0));
+                }
+
+                @NonNull
+                @Override
+                PackagedGif toPackagedGif(@NonNull Uri model) {
+                    return PackagedGif.ofAsset(mAssets, model.getPath().substring(ASSET_PATH_PREFIX.length()));
+                }
+            };
+        }
+
+        @Override
+        public void teardown() {
+            // Do nothing.
+        }
+    }
+
+    /**
+     * 直接返回 PackagedGif, 没有需要打开或释放的资源
+     */
+    private static class PackagedGifFetcher implements DataFetcher<PackagedGif> {
+
+        private final PackagedGif mGif;
+
+        PackagedGifFetcher(PackagedGif gif) {
+            this.mGif = gif;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super PackagedGif> callback) {
+            callback.onDataReady(mGif);
+        }
+
+        @Override
+        public void cleanup() {
+            // Do nothing.
+        }
+
+        @Override
+        public void cancel() {
+            // Do nothing.
+        }
+
+        @NonNull
+        @Override
+        public Class<PackagedGif> getDataClass() {
+            return PackagedGif.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.LOCAL;
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.sharry.sample.gifdecoder.extension;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.ImageHeaderParser;
+import com.bumptech.glide.load.ImageHeaderParserUtils;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.sharry.lib.gif.GifDecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * 将打包在 APK 中的 GIF 转为 FrameSequenceDrawable
+ * <p>
+ * 未压缩的资源与 asset 由 Native 层直接读取 APK 的内存映射, 不经过 Java 的 InputStream
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class PackagedGifResourceDecoder extends GifResourceDecoder<PackagedGif> {
+
+    PackagedGifResourceDecoder(List<ImageHeaderParser> parsers, BitmapPool bitmapPool, ArrayPool arrayPool) {
+        super(parsers, bitmapPool, arrayPool);
+    }
+
+    @Override
+    public boolean handles(@NonNull PackagedGif source, @NonNull Options options) throws IOException {
+        // 只读取文件头, 非 GIF 的资源交给 Glide 默认的加载流程
+        InputStream stream = source.open();
+        try {
+            return ImageHeaderParserUtils.getType(mParsers, stream, mArrayPool) == ImageHeaderParser.ImageType.GIF;
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Override
+    GifDecoder decodeGif(@NonNull PackagedGif source) {
+        return source.decode();
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.sharry.sample.gifdecoder.extension;
+
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.ImageHeaderParser;
+import com.bumptech.glide.load.ImageHeaderParserUtils;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.sharry.lib.gif.GifDecoder;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * 将 GIF 的 ParcelFileDescriptor 转为 FrameSequenceDrawable
+ * <p>
+ * 由 Native 层直接读取文件句柄, 不经过 Java 的 InputStream
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class ParcelFileDescriptorGifResourceDecoder extends GifResourceDecoder<ParcelFileDescriptor> {
+
+    /**
+     * "GIF87a" or "GIF89a"
+     */
+    private static final int GIF_HEADER_LENGTH = 6;
+
+    ParcelFileDescriptorGifResourceDecoder(List<ImageHeaderParser> parsers, BitmapPool bitmapPool, ArrayPool arrayPool) {
+        super(parsers, bitmapPool, arrayPool);
+    }
+
+    @Override
+    public boolean handles(@NonNull ParcelFileDescriptor source, @NonNull Options options) throws IOException {
+        // 使用 positional read 读取文件头, 不改变文件句柄的读取位置, 以便后续 Native 层从当前位置解码
+        // 注意: 这里的 FileInputStream 并不持有该句柄, 不能将其关闭
+        FileChannel channel = new FileInputStream(source.getFileDescriptor()).getChannel();
+        ByteBuffer header = ByteBuffer.allocate(GIF_HEADER_LENGTH);
+        long position = channel.position();
+        while (header.hasRemaining()) {
+            if (channel.read(header, position + header.position()) < 0) {
+                break;
+            }
+        }
+        header.flip();
+        return ImageHeaderParserUtils.getType(mParsers, header) == ImageHeaderParser.ImageType.GIF;
+    }
+
+    @Override
+    GifDecoder decodeGif(@NonNull ParcelFileDescriptor source) {
+        return GifDecoder.decodeFileDescriptor(source);
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.sharry.sample.gifdecoder.extension;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.ImageHeaderParser;
+import com.bumptech.glide.load.ImageHeaderParserUtils;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.engine.bitmap_recycle.ArrayPool;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.sharry.lib.gif.GifDecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * 将 GIF 的 InputStream 转为 FrameSequenceDrawable
+ * <p>
+ * 数据需要通过 JNI 分块拷贝, 优先使用 {@link ByteBufferGifResourceDecoder}
+ *
+ * @author Sharry <a href="sharrychoochn@gmail.com">Contact me.</a>
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public class StreamGifResourceDecoder extends GifResourceDecoder<InputStream> {
+
+    StreamGifResourceDecoder(List<ImageHeaderParser> parsers, BitmapPool bitmapPool, ArrayPool arrayPool) {
+        super(parsers, bitmapPool, arrayPool);
+    }
+
+    @Override
+    public boolean handles(@NonNull InputStream source, @NonNull Options options) throws IOException {
+        return ImageHeaderParserUtils.getType(mParsers, source, mArrayPool) == ImageHeaderParser.ImageType.GIF;
+    }
+
+    @Override
+    GifDecoder decodeGif(@NonNull InputStream source) {
+        return GifDecoder.decodeStream(source);
+    }
+
+}
@@ -6,8 +6,13 @@
 //
 
 #include <malloc.h>
+#include <stdint.h>
 #include <string.h>
+#include <unistd.h>
+#include <sys/mman.h>
+#include <sys/stat.h>
 #include <android/bitmap.h>
+#include <android/asset_manager_jni.h>
 #include "GifDecoder.h"
 #include "utils/math.h"
 #include "utils/log.h"
@@ -24,8 +29,8 @@ static Color8888 gifColorToColor8888(const GifColorType &color) {
     return ARGB_TO_COLOR8888(0xff, color.Red, color.Green, color.Blue);
 }
 
-static bool willBeCleared(const GraphicsControlBlock &gcb) {
-    return gcb.DisposalMode == DISPOSE_BACKGROUND || gcb.DisposalMode == DISPOSE_PREVIOUS;
+static bool willBeCleared(int disposalMode) {
+    return disposalMode == DISPOSE_BACKGROUND || disposalMode == DISPOSE_PREVIOUS;
 }
 
 // return true if area of 'target' is completely covers area of 'covered'
@@ -36,6 +41,14 @@ static bool checkIfCover(const GifImageDesc &target, const GifImageDesc &covered
            && covered.Top + covered.Height <= target.Top + target.Height;
 }
 
+// return true if area of 'desc' covers the whole gif canvas
+static bool checkIfFullScreen(const GifFileType *gif, const GifImageDesc &desc) {
+    return desc.Left <= 0
+           && desc.Top <= 0
+           && desc.Left + desc.Width >= gif->SWidth
+           && desc.Top + desc.Height >= gif->SHeight;
+}
+
 static void
 copyLine(Color8888 *dst, const unsigned char *src, const ColorMapObject *cmap, int transparent,
          int width, int inSampleSize) {
@@ -52,16 +65,96 @@ static void setLineColor(Color8888 *dst, Color8888 color, int width) {
     }
 }
 
-static void getCopySize(const GifImageDesc &imageDesc, int maxWidth, int maxHeight,
-                        GifWord &copyWidth, GifWord &copyHeight) {
-    copyWidth = imageDesc.Width;
-    if (imageDesc.Left + copyWidth > maxWidth) {
-        copyWidth = maxWidth - imageDesc.Left;
+// 帧在输出坐标系中的区域, 不做裁剪
+static GifImageDesc getSampledDesc(const GifImageDesc &imageDesc, int inSampleSize) {
+    GifImageDesc desc = imageDesc;
+    desc.Left = imageDesc.Left / inSampleSize;
+    desc.Top = imageDesc.Top / inSampleSize;
+    desc.Width = (imageDesc.Width + inSampleSize - 1) / inSampleSize;
+    desc.Height = (imageDesc.Height + inSampleSize - 1) / inSampleSize;
+    return desc;
+}
+
+// 将帧在采样后的区域裁剪到 region 内, 结果为相对 region 左上角的坐标, 裁剪后为空时返回 false
+static bool clipToRegion(const GifImageDesc &imageDesc, int inSampleSize, const DrawRegion &region,
+                         DrawRegion &clipped) {
+    const GifImageDesc desc = getSampledDesc(imageDesc, inSampleSize);
+    const int left = max(desc.Left, region.left);
+    const int top = max(desc.Top, region.top);
+    const int right = min(desc.Left + desc.Width, region.left + region.width);
+    const int bottom = min(desc.Top + desc.Height, region.top + region.height);
+    if (right <= left || bottom <= top) {
+        return false;
+    }
+    clipped.left = left - region.left;
+    clipped.top = top - region.top;
+    clipped.width = right - left;
+    clipped.height = bottom - top;
+    return true;
+}
+
+// 帧的像素是否都在色表范围内, 超出范围的像素不会被绘制, 即帧并非完全不透明
+static bool usesOnlyMappedColors(const SavedImage &image, const ColorMapObject *cmap) {
+    if (cmap->ColorCount >= 256) {
+        return true;
+    }
+    const unsigned char *src = image.RasterBits;
+    const unsigned char *end = src + (size_t) image.ImageDesc.Width * image.ImageDesc.Height;
+    for (; src < end; src++) {
+        if (*src >= cmap->ColorCount) {
+            return false;
+        }
+    }
+    return true;
+}
+
+// 帧像素索引的 FNV-1a 哈希, 只包含尺寸与像素, 用于查找可以共享像素数据的帧
+static uint64_t hashRaster(const SavedImage &image) {
+    uint64_t hash = 14695981039346656037ULL;
+    hash = (hash ^ (uint64_t) image.ImageDesc.Width) * 1099511628211ULL;
+    hash = (hash ^ (uint64_t) image.ImageDesc.Height) * 1099511628211ULL;
+    if (image.RasterBits) {
+        const unsigned char *src = image.RasterBits;
+        const unsigned char *end = src + (size_t) image.ImageDesc.Width * image.ImageDesc.Height;
+        for (; src < end; src++) {
+            hash = (hash ^ *src) * 1099511628211ULL;
+        }
+    }
+    return hash;
+}
+
+static bool isSameRaster(const SavedImage &a, const SavedImage &b) {
+    if (a.ImageDesc.Width != b.ImageDesc.Width || a.ImageDesc.Height != b.ImageDesc.Height
+        || !a.RasterBits || !b.RasterBits) {
+        return false;
+    }
+    return a.RasterBits == b.RasterBits
+           || !memcmp(a.RasterBits, b.RasterBits, (size_t) a.ImageDesc.Width * a.ImageDesc.Height);
+}
+
+static bool isSameColorMap(const ColorMapObject *a, const ColorMapObject *b) {
+    if (a == b) {
+        return true;
     }
-    copyHeight = imageDesc.Height;
-    if (imageDesc.Top + copyHeight > maxHeight) {
-        copyHeight = maxHeight - imageDesc.Top;
+    return a && b && a->ColorCount == b->ColorCount
+           && !memcmp(a->Colors, b->Colors, a->ColorCount * sizeof(GifColorType));
+}
+
+// 首个 arena 块的上限
+static const size_t MAX_ARENA_INITIAL_SIZE = 32 * 1024 * 1024;
+// 数据长度未知时首个 arena 块的上限, 不够时由 arena 自行扩容
+static const size_t MAX_ARENA_UNKNOWN_SIZE = 4 * 1024 * 1024;
+
+// 预估解析所需的内存: 动图的 LZW 压缩率通常在 4 倍左右, 数据长度未知时只按 2 帧画布估算
+static size_t estimateArenaSize(const GifFileType *gif, long sourceSize, int maxFrameNr) {
+    size_t canvasSize = (size_t) gif->SWidth * gif->SHeight;
+    size_t estimate = sourceSize > 0 ? (size_t) sourceSize * 4
+                                     : min(canvasSize * 2, MAX_ARENA_UNKNOWN_SIZE);
+    if (maxFrameNr >= 0) {
+        // 只会读取前 maxFrameNr + 1 帧
+        estimate = min(estimate, canvasSize * (maxFrameNr + 1));
     }
+    return min(estimate, MAX_ARENA_INITIAL_SIZE);
 }
 
 static int streamReader(GifFileType *fileType, GifByteType *out, int size) {
@@ -74,32 +167,128 @@ static int streamReader(GifFileType *fileType, GifByteType *out, int size) {
 // Thanks for Google.
 ////////////////////////////////////////////////////////////////////////////////
 
-GifDecoder::GifDecoder(char *filePath) {
+GifDecoder::GifDecoder(char *filePath, int maxFrameNr, long maxTimeMs) {
     mGif = DGifOpenFileName(filePath, NULL);
-    init();
+    struct stat st;
+    init(maxFrameNr, maxTimeMs, stat(filePath, &st) == 0 ? (long) st.st_size : -1);
 }
 
-GifDecoder::GifDecoder(Stream *stream) {
+GifDecoder::GifDecoder(int fd) {
+    // giflib 会在 DGifCloseFile 时关闭文件句柄, 因此这里使用 dup 出来的句柄, 避免影响调用方
+    int dupFd = dup(fd);
+    struct stat st;
+    long sourceSize = dupFd >= 0 && fstat(dupFd, &st) == 0 ? (long) st.st_size : -1;
+    mGif = dupFd >= 0 ? DGifOpenFileHandle(dupFd, NULL) : NULL;
+    init(-1, -1, sourceSize);
+}
+
+GifDecoder::GifDecoder(Stream *stream, int maxFrameNr, long maxTimeMs, long sourceSize) {
     mGif = DGifOpen(stream, streamReader, NULL);
-    init();
+    init(maxFrameNr, maxTimeMs, sourceSize);
+}
+
+int GifDecoder::slurp(int maxFrameNr, long maxTimeMs, int *&rasterOwners) {
+    GraphicsControlBlock gcb;
+    long durationMs = 0;
+    bool done = false;
+    int capacity = 0;
+    uint64_t *hashes = NULL;
+    int result = GIF_OK;
+    while (!done) {
+        const int frameNr = mGif->ImageCount;
+        if (DGifSlurpNext(mGif, &done) == GIF_ERROR) {
+            result = GIF_ERROR;
+            break;
+        }
+        if (mGif->ImageCount == frameNr) {
+            continue;
+        }
+        if (frameNr == capacity) {
+            capacity = max(capacity * 2, 16);
+            uint64_t *newHashes = new uint64_t[capacity];
+            int *newOwners = new int[capacity];
+            if (frameNr > 0) {
+                memcpy(newHashes, hashes, frameNr * sizeof(uint64_t));
+                memcpy(newOwners, rasterOwners, frameNr * sizeof(int));
+            }
+            delete[] hashes;
+            delete[] rasterOwners;
+            hashes = newHashes;
+            rasterOwners = newOwners;
+        }
+        rasterOwners[frameNr] = shareDuplicateRaster(frameNr, hashes);
+        // 已读取到需要的帧, 不再读取后续数据
+        if (maxFrameNr < 0 && maxTimeMs < 0) {
+            continue;
+        }
+        DGifSavedExtensionToGCB(mGif, frameNr, &gcb);
+        durationMs += getDelayMs(gcb);
+        if ((maxFrameNr >= 0 && frameNr >= maxFrameNr)
+            || (maxTimeMs >= 0 && durationMs > maxTimeMs)) {
+            break;
+        }
+    }
+    delete[] hashes;
+    return result == GIF_OK && mGif->ImageCount > 0 ? GIF_OK : GIF_ERROR;
+}
+
+int GifDecoder::shareDuplicateRaster(int frameNr, uint64_t *hashes) {
+    SavedImage &image = mGif->SavedImages[frameNr];
+    hashes[frameNr] = hashRaster(image);
+    // 帧数通常不多, 直接与之前每一帧的哈希比较
+    for (int i = 0; i < frameNr; i++) {
+        const SavedImage &owner = mGif->SavedImages[i];
+        if (hashes[i] != hashes[frameNr] || !isSameRaster(owner, image)) {
+            continue;
+        }
+        // 刚解码的像素数据是 arena 中最后一次分配的内存, 直接归还
+        const size_t size = (size_t) image.ImageDesc.Width * image.ImageDesc.Height;
+        if (!mArena) {
+            free(image.RasterBits);
+        } else if (!GifArenaFreeLast(mArena, image.RasterBits, size)) {
+            return frameNr;
+        }
+        // 与之前相同的像素数据都指向首次出现的帧
+        image.RasterBits = owner.RasterBits;
+        return i;
+    }
+    return frameNr;
 }
 
-void GifDecoder::init() {
+void GifDecoder::init(int maxFrameNr, long maxTimeMs, long sourceSize) {
     if (!mGif) {
         ALOGW("Gif load failed");
         DGifCloseFile(mGif, NULL);
         return;
     }
-    if (DGifSlurp(mGif) != GIF_OK) {
+    // 帧数据, 色板与扩展块都从 arena 中分配, 避免逐帧 malloc 带来的开销与堆碎片
+    mArena = GifArenaCreate(estimateArenaSize(mGif, sourceSize, maxFrameNr));
+    if (mArena && DGifSetArena(mGif, mArena) != GIF_OK) {
+        GifArenaFree(mArena);
+        mArena = NULL;
+    }
+    // 每一帧像素数据的持有者, 与之前某一帧相同时为首次出现的那一帧
+    int *rasterOwners = NULL;
+    if (slurp(maxFrameNr, maxTimeMs, rasterOwners) != GIF_OK) {
         ALOGW("Gif slurp failed");
+        delete[] rasterOwners;
         DGifCloseFile(mGif, NULL);
         mGif = NULL;
+        GifArenaFree(mArena);
+        mArena = NULL;
         return;
     }
+#if GIF_DEBUG
+    ALOGD("Gif parsed %d frames into %zu bytes", mGif->ImageCount, GifArenaSize(mArena));
+#endif
 
-    int lastUnclearedFrame = -1;
-    mPreservedFrames = new bool[mGif->ImageCount];
-    mRestoringFrames = new int[mGif->ImageCount];
+    mKeyFrames = new int[mGif->ImageCount];
+    mFrameDisposals = new unsigned char[mGif->ImageCount];
+    mFrameTransparentColors = new int[mGif->ImageCount];
+    mFrameDelays = new int[mGif->ImageCount];
+    mFrameFlags = new unsigned char[mGif->ImageCount];
+    mFrameColorMaps = new const ColorMapObject *[mGif->ImageCount];
+    mFrameOverdrawnBy = new int[mGif->ImageCount];
 
     GraphicsControlBlock gcb;
     for (int i = 0; i < mGif->ImageCount; i++) {
@@ -121,30 +310,65 @@ void GifDecoder::init() {
             }
         }
 
+        // 只在这里解析一次扩展块
         DGifSavedExtensionToGCB(mGif, i, &gcb);
+        const ColorMapObject *cmap = image.ImageDesc.ColorMap ? image.ImageDesc.ColorMap
+                                                              : mGif->SColorMap;
+        mFrameDisposals[i] = (unsigned char) gcb.DisposalMode;
+        mFrameTransparentColors[i] = gcb.TransparentColor;
+        mFrameDelays[i] = (int) getDelayMs(gcb);
+        mFrameColorMaps[i] = cmap;
+        mFrameFlags[i] = 0;
+        if (gcb.TransparentColor == NO_TRANSPARENT_COLOR) {
+            mFrameFlags[i] |= FRAME_FLAG_OPAQUE;
+            if (i > 0 && checkIfCover(image.ImageDesc, mGif->SavedImages[i - 1].ImageDesc)) {
+                mFrameFlags[i] |= FRAME_FLAG_COVERS_PREVIOUS;
+            }
+        }
+        if (checkIfFullScreen(mGif, image.ImageDesc)) {
+            mFrameFlags[i] |= FRAME_FLAG_FULL_SCREEN;
+        }
+        if (rasterOwners[i] != i) {
+            mFrameFlags[i] |= FRAME_FLAG_SHARED_RASTER;
+        }
 
         // timing
-        mDurationMs += getDelayMs(gcb);
+        mDurationMs += mFrameDelays[i];
+    }
 
-        // preserve logic
-        mPreservedFrames[i] = false;
-        mRestoringFrames[i] = -1;
-        if (gcb.DisposalMode == DISPOSE_PREVIOUS && lastUnclearedFrame >= 0) {
-            mPreservedFrames[lastUnclearedFrame] = true;
-            mRestoringFrames[i] = lastUnclearedFrame;
-        }
-        if (!willBeCleared(gcb)) {
-            lastUnclearedFrame = i;
+    delete[] rasterOwners;
+
+    // 合并连续的重复帧, 之后的帧号均为合并后的逻辑帧号
+    mFrameCount = collapseDuplicateFrames();
+    findOverdrawnFrames();
+
+    for (int i = 0; i < mFrameCount; i++) {
+        // key frame logic, the canvas before this frame doesn't matter if:
+        // this frame is opaque, covers the whole canvas and isn't restored to the canvas before it,
+        // or the previous frame covers the whole canvas and will be cleared to background.
+        mKeyFrames[i] = i == 0
+                        || ((mFrameFlags[i] & FRAME_FLAG_OPAQUE) && mFrameColorMaps[i]
+                            && (mFrameFlags[i] & FRAME_FLAG_FULL_SCREEN)
+                            && mFrameDisposals[i] != DISPOSE_PREVIOUS)
+                        || (mFrameDisposals[i - 1] == DISPOSE_BACKGROUND
+                            && (mFrameFlags[i - 1] & FRAME_FLAG_FULL_SCREEN));
+    }
+
+    // map each frame to the nearest key frame at or before it
+    for (int i = 0, keyFrame = 0; i < mFrameCount; i++) {
+        if (mKeyFrames[i]) {
+            keyFrame = i;
+            mFrameFlags[i] |= FRAME_FLAG_KEY_FRAME;
         }
+        mKeyFrames[i] = keyFrame;
     }
 
 #if GIF_DEBUG
     ALOGI("GifDecoder created with size [%d, %d], frames is %d, duration is %ld",
-          mGif->SWidth, mGif->SHeight, mGif->ImageCount, mDurationMs);
-    for (int i = 0; i < mGif->ImageCount; i++) {
-        DGifSavedExtensionToGCB(mGif, i, &gcb);
-        LOGE("Frame %d - must preserve %d, restore point %d, trans color %d",
-             i, mPreservedFrames[i], mRestoringFrames[i], gcb.TransparentColor);
+          mGif->SWidth, mGif->SHeight, mFrameCount, mDurationMs);
+    for (int i = 0; i < mFrameCount; i++) {
+        ALOGD("Frame %d - disposal %d, key frame %d, trans color %d",
+              i, mFrameDisposals[i], mKeyFrames[i], mFrameTransparentColors[i]);
     }
 #endif
 
@@ -152,9 +376,7 @@ void GifDecoder::init() {
     const ColorMapObject *cmap = mGif->SColorMap;
     if (cmap) {
         // calculate bg color
-        GraphicsControlBlock gcb;
-        DGifSavedExtensionToGCB(mGif, 0, &gcb);
-        if (gcb.TransparentColor == NO_TRANSPARENT_COLOR
+        if (mFrameTransparentColors[0] == NO_TRANSPARENT_COLOR
             && mGif->SBackGroundColor < cmap->ColorCount) {
             // 获取 GIF 的背景颜色
             mBgColor = gifColorToColor8888(cmap->Colors[mGif->SBackGroundColor]);
@@ -167,16 +389,40 @@ void GifDecoder::init() {
 
 GifDecoder::~GifDecoder() {
     if (mGif) {
+        // 共享的像素数据由首次出现的帧持有, 避免重复释放
+        for (int i = 0; i < mFrameCount; i++) {
+            if (mFrameFlags[i] & FRAME_FLAG_SHARED_RASTER) {
+                mGif->SavedImages[i].RasterBits = NULL;
+            }
+        }
         DGifCloseFile(mGif, NULL);
     }
-    delete[] mPreservedFrames;
-    delete[] mRestoringFrames;
+    // DGifCloseFile 不会释放 arena 中的数据, 需在其之后一次性释放
+    GifArenaFree(mArena);
+    delete[] mKeyFrames;
+    delete[] mFrameDisposals;
+    delete[] mFrameTransparentColors;
+    delete[] mFrameDelays;
+    delete[] mFrameFlags;
+    delete[] mFrameColorMaps;
+    delete[] mFrameOverdrawnBy;
     ALOGE("GifDecoder release.");
 }
 
+void GifDecoder::acquire() {
+    __atomic_add_fetch(&mRefCount, 1, __ATOMIC_RELAXED);
+}
+
+void GifDecoder::release() {
+    if (__atomic_sub_fetch(&mRefCount, 1, __ATOMIC_ACQ_REL) == 0) {
+        delete this;
+    }
+}
+
 long
-GifDecoder::drawFrame(int frameNr, Color8888 *outputPtr, int outputPixelStride, int previousFrameNr,
-                      int inSampleSize) {
+GifDecoder::drawFrame(RenderContext *context, int frameNr, Color8888 *outputPtr,
+                      int outputPixelStride, int previousFrameNr, int inSampleSize,
+                      const DrawRegion *crop) const {
     if (!mHasInit) {
         return -1;
     }
@@ -187,148 +433,315 @@ GifDecoder::drawFrame(int frameNr, Color8888 *outputPtr, int outputPixelStride,
           this, frameNr, outputPtr, previousFrameNr);
 #endif
 
-    const int requestedWidth = mGif->SWidth / inSampleSize;
-    const int requestedHeight = mGif->SHeight / inSampleSize;
-
-    GraphicsControlBlock gcb;
+    // 采样后画布中需要绘制的区域, 其之外的像素不会被合成
+    DrawRegion region;
+    region.width = mGif->SWidth / inSampleSize;
+    region.height = mGif->SHeight / inSampleSize;
+    if (crop) {
+        const int left = max(crop->left / inSampleSize, 0);
+        const int top = max(crop->top / inSampleSize, 0);
+        region.width = max(min(crop->width / inSampleSize, region.width - left), 0);
+        region.height = max(min(crop->height / inSampleSize, region.height - top), 0);
+        region.left = left;
+        region.top = top;
+    }
 
     int start = max(previousFrameNr + 1, 0);
+    // output 中的内容无法复用, 或者最近的关键帧更靠后时, 直接从关键帧开始绘制, 跳过其之前的帧
+    const int keyFrame = getKeyFrame(frameNr);
+    if (start > frameNr || start < keyFrame) {
+        start = keyFrame;
+    }
 
-    for (int i = max(start - 1, 0); i < frameNr; i++) {
-        int neededPreservedFrame = getRestoringFrame(i);
-        if (neededPreservedFrame >= 0 &&
-            (mPreserveBufferFrame != neededPreservedFrame)) {
+    // 不是接着 output 中已有的帧继续绘制时, 需要清空画布
+    bool resetCanvas = start > 0 && start != previousFrameNr + 1;
+    // 接着 output 中的上一帧继续绘制时, 若上一帧需要恢复为其绘制前的内容, 需要有它的快照
+    if (start > 0 && !resetCanvas
+        && mFrameDisposals[start - 1] == DISPOSE_PREVIOUS
+        && !isPrevFrameCovered(start, inSampleSize)
+        && !context->findPreserveBuffer(start - 1, inSampleSize, region)) {
 #if GIF_DEBUG
-            ALOGD("frame %d needs frame %d preserved, but %d is currently, so drawing from scratch",
-                    i, neededPreservedFrame, mPreserveBufferFrame);
+        ALOGD("frame %d has no preserve at sample size %d, so drawing from key frame %d",
+              start - 1, inSampleSize, keyFrame);
 #endif
-            start = 0;
-        }
+        start = keyFrame;
+        resetCanvas = start > 0;
     }
 
+    DrawRegion clipped;
     for (int i = start; i <= frameNr; i++) {
-        DGifSavedExtensionToGCB(gif, i, &gcb);
         const SavedImage &frame = gif->SavedImages[i];
+        const int transparentColor = mFrameTransparentColors[i];
 
 #if GIF_DEBUG
-        bool frameOpaque = gcb.TransparentColor == NO_TRANSPARENT_COLOR;
         ALOGD("producing frame %d, drawing frame %d (opaque %d, disp %d, del %d)",
-                frameNr, i, frameOpaque, gcb.DisposalMode, gcb.DelayTime);
+                frameNr, i, mFrameFlags[i] & FRAME_FLAG_OPAQUE, mFrameDisposals[i], mFrameDelays[i]);
 #endif
         if (i == 0) {
             // clear bitmap
             Color8888 bgColor = mBgColor;
-            for (int y = 0; y < requestedHeight; y++) {
-                for (int x = 0; x < requestedWidth; x++) {
-                    outputPtr[y * outputPixelStride + x] = bgColor;
-                }
+            for (int y = 0; y < region.height; y++) {
+                setLineColor(outputPtr + y * outputPixelStride, bgColor, region.width);
+            }
+        } else if (i == start && resetCanvas) {
+            // 从关键帧开始绘制, 之前的帧已被完全覆盖或清除
+            for (int y = 0; y < region.height; y++) {
+                setLineColor(outputPtr + y * outputPixelStride, TRANSPARENT, region.width);
             }
         } else {
-            GraphicsControlBlock prevGcb;
-            DGifSavedExtensionToGCB(gif, i - 1, &prevGcb);
             const SavedImage &prevFrame = gif->SavedImages[i - 1];
-            bool prevFrameDisposed = willBeCleared(prevGcb);
+            const int prevDisposal = mFrameDisposals[i - 1];
+            bool prevFrameCompletelyCovered = isPrevFrameCovered(i, inSampleSize);
 
-            bool newFrameOpaque = gcb.TransparentColor == NO_TRANSPARENT_COLOR;
-            bool prevFrameCompletelyCovered = newFrameOpaque
-                                              && checkIfCover(frame.ImageDesc,
-                                                              prevFrame.ImageDesc);
-
-            if (prevFrameDisposed && !prevFrameCompletelyCovered) {
-                switch (prevGcb.DisposalMode) {
+            if (willBeCleared(prevDisposal) && !prevFrameCompletelyCovered) {
+                switch (prevDisposal) {
                     case DISPOSE_BACKGROUND: {
                         // 填充背景色
-                        Color8888 *dst = outputPtr + (prevFrame.ImageDesc.Left / inSampleSize) +
-                                         (prevFrame.ImageDesc.Top / inSampleSize) *
-                                         outputPixelStride;
-                        GifWord copyWidth, copyHeight;
-                        getCopySize(prevFrame.ImageDesc, requestedWidth, requestedHeight, copyWidth,
-                                    copyHeight);
-                        for (; copyHeight > 0; copyHeight--) {
-                            setLineColor(dst, TRANSPARENT, copyWidth);
-                            dst += outputPixelStride;
+                        if (clipToRegion(prevFrame.ImageDesc, inSampleSize, region, clipped)) {
+                            Color8888 *dst = outputPtr + clipped.left + clipped.top * outputPixelStride;
+                            for (int y = 0; y < clipped.height; y++) {
+                                setLineColor(dst, TRANSPARENT, clipped.width);
+                                dst += outputPixelStride;
+                            }
                         }
                         break;
                     }
                     case DISPOSE_PREVIOUS: {
-                        // 从上一帧中恢复数据
-                        restorePreserveBuffer(outputPtr, outputPixelStride, inSampleSize);
+                        // 这类帧只在作为目标帧时才会被绘制, 即只有接着 output 中的上一帧继续绘制时才需要恢复
+                        if (i == start) {
+                            context->restorePreserveBuffer(outputPtr, outputPixelStride, i - 1,
+                                                           inSampleSize, region);
+                        }
                         break;
                     }
                 }
             }
-
-            if (getPreservedFrame(i - 1)) {
-                // 保存上一帧的数据
-                savePreserveBuffer(outputPtr, outputPixelStride, i - 1, inSampleSize);
-            }
         }
 
-        bool willBeCleared = gcb.DisposalMode == DISPOSE_BACKGROUND
-                             || gcb.DisposalMode == DISPOSE_PREVIOUS;
-        if (i == frameNr || !willBeCleared) {
-            // 使用全局色表为默认色表
-            const ColorMapObject *cmap = gif->SColorMap;
-            // 若存在局部色表, 则使用局部色表
-            if (frame.ImageDesc.ColorMap) {
-                cmap = frame.ImageDesc.ColorMap;
+        // 目标帧之前会被清除或被完全覆盖的帧无需合成
+        if (i == frameNr || (!willBeCleared(mFrameDisposals[i])
+                             && !isOverdrawnBefore(i, frameNr, inSampleSize))) {
+            if (mFrameDisposals[i] == DISPOSE_PREVIOUS) {
+                // 保存将被当前帧覆盖的区域, 以便绘制下一帧时恢复
+                if (!clipToRegion(frame.ImageDesc, inSampleSize, region, clipped)) {
+                    // 帧完全在输出区域之外
+                    clipped = DrawRegion();
+                }
+                context->savePreserveBuffer(outputPtr, outputPixelStride, i, inSampleSize, region,
+                                            clipped);
             }
-            if (cmap) {
-                // 填充当前帧的颜色
-                const unsigned char *src = frame.RasterBits;
-                Color8888 *dst = outputPtr + (frame.ImageDesc.Left / inSampleSize) +
-                                 (frame.ImageDesc.Top / inSampleSize) * outputPixelStride;
-                GifWord copyWidth, copyHeight;
-                getCopySize(frame.ImageDesc, requestedWidth, requestedHeight, copyWidth,
-                            copyHeight);
-                for (; copyHeight > 0; copyHeight--) {
-                    copyLine(dst, src, cmap, gcb.TransparentColor, copyWidth, inSampleSize);
-                    src += frame.ImageDesc.Width * inSampleSize;
+            // 局部色表优先, 否则使用全局色表
+            const ColorMapObject *cmap = mFrameColorMaps[i];
+            if (!cmap) {
+                ALOGI("Color map not available, ignore this frame %d", frameNr);
+            } else if (clipToRegion(frame.ImageDesc, inSampleSize, region, clipped)) {
+                // 填充当前帧的颜色, 跳过区域之外的行与列
+                const GifImageDesc &desc = frame.ImageDesc;
+                const int srcX = (clipped.left + region.left - desc.Left / inSampleSize) * inSampleSize;
+                const int srcY = (clipped.top + region.top - desc.Top / inSampleSize) * inSampleSize;
+                const unsigned char *src = frame.RasterBits + srcY * desc.Width + srcX;
+                Color8888 *dst = outputPtr + clipped.left + clipped.top * outputPixelStride;
+                for (int y = 0; y < clipped.height; y++) {
+                    copyLine(dst, src, cmap, transparentColor, clipped.width, inSampleSize);
+                    src += desc.Width * inSampleSize;
                     dst += outputPixelStride;
                 }
-            } else {
-                ALOGI("Color map not available, ignore this frame %d", frameNr);
             }
         }
     }
     // return last frame's delay
-    const int maxFrame = gif->ImageCount;
+    const int maxFrame = mFrameCount;
     const int lastFrame = (frameNr + maxFrame - 1) % maxFrame;
-    DGifSavedExtensionToGCB(gif, lastFrame, &gcb);
-    return getDelayMs(gcb);
+    return getFrameDelay(lastFrame);
 }
 
-void
-GifDecoder::restorePreserveBuffer(Color8888 *outputPtr, int outputPixelStride, int inSampleSize) {
-    // 判断是否可以从上一帧中获取数据
-    if (!mPreserveBuffer || inSampleSize != mPreserveSampleSize) {
-        ALOGI("preserve buffer not available.");
-        return;
+long GifDecoder::getFrameDelay(int frameNr) const {
+    if (!mHasInit || frameNr < 0 || frameNr >= mFrameCount) {
+        return 0;
+    }
+    return mFrameDelays[frameNr];
+}
+
+bool GifDecoder::isPrevFrameCovered(int frameNr, int inSampleSize) const {
+    if (!(mFrameFlags[frameNr] & FRAME_FLAG_COVERS_PREVIOUS)
+        || mFrameDisposals[frameNr] == DISPOSE_PREVIOUS) {
+        return false;
+    }
+    if (inSampleSize == 1) {
+        return true;
+    }
+    // 采样后的区域各自取整, 原图中的覆盖关系不一定成立, 需要在输出坐标系中重新判断
+    return checkIfCover(getSampledDesc(mGif->SavedImages[frameNr].ImageDesc, inSampleSize),
+                        getSampledDesc(mGif->SavedImages[frameNr - 1].ImageDesc, inSampleSize));
+}
+
+bool GifDecoder::isOverdrawnBefore(int frameNr, int targetFrameNr, int inSampleSize) const {
+    const int coverFrameNr = mFrameOverdrawnBy[frameNr];
+    if (coverFrameNr < 0 || coverFrameNr > targetFrameNr) {
+        return false;
+    }
+    if (inSampleSize == 1) {
+        return true;
+    }
+    return checkIfCover(getSampledDesc(mGif->SavedImages[coverFrameNr].ImageDesc, inSampleSize),
+                        getSampledDesc(mGif->SavedImages[frameNr].ImageDesc, inSampleSize));
+}
+
+void GifDecoder::findOverdrawnFrames() {
+    // 只向后查找有限的帧数, 避免解析时的开销随帧数平方增长
+    static const int MAX_LOOKAHEAD = 32;
+    // 能够覆盖之前帧的帧: 所有像素都会被绘制, 且不会恢复为其绘制前的画布
+    bool *opaque = new bool[mFrameCount];
+    for (int i = 0; i < mFrameCount; i++) {
+        opaque[i] = (mFrameFlags[i] & FRAME_FLAG_OPAQUE) && mFrameColorMaps[i]
+                    && mFrameDisposals[i] != DISPOSE_PREVIOUS
+                    && usesOnlyMappedColors(mGif->SavedImages[i], mFrameColorMaps[i]);
+    }
+    for (int i = 0; i < mFrameCount; i++) {
+        mFrameOverdrawnBy[i] = -1;
+        const int end = min(i + MAX_LOOKAHEAD, mFrameCount - 1);
+        for (int j = i + 1; j <= end; j++) {
+            if (opaque[j] && checkIfCover(mGif->SavedImages[j].ImageDesc,
+                                          mGif->SavedImages[i].ImageDesc)) {
+                mFrameOverdrawnBy[i] = j;
+                break;
+            }
+        }
+    }
+    delete[] opaque;
+}
+
+int GifDecoder::collapseDuplicateFrames() {
+    const int imageCount = mGif->ImageCount;
+    int count = 0;
+    for (int i = 0; i < imageCount; i++) {
+        SavedImage &image = mGif->SavedImages[i];
+        if (count > 0) {
+            const int last = count - 1;
+            const SavedImage &prev = mGif->SavedImages[last];
+            // 上一帧保留在画布上且与当前帧完全相同时, 绘制当前帧不会改变画布, 直接并入上一帧
+            if (!willBeCleared(mFrameDisposals[last])
+                && mFrameDisposals[i] != DISPOSE_PREVIOUS
+                && prev.ImageDesc.Left == image.ImageDesc.Left
+                && prev.ImageDesc.Top == image.ImageDesc.Top
+                && mFrameTransparentColors[last] == mFrameTransparentColors[i]
+                && isSameColorMap(mFrameColorMaps[last], mFrameColorMaps[i])
+                && isSameRaster(prev, image)) {
+                mFrameDelays[last] += mFrameDelays[i];
+                mFrameDisposals[last] = mFrameDisposals[i];
+                if (mFrameFlags[i] & FRAME_FLAG_SHARED_RASTER) {
+                    // 共享的像素数据由首次出现的帧持有, 其不会被合并
+                    image.RasterBits = NULL;
+                }
+                continue;
+            }
+        }
+        if (count != i) {
+            // 被合并的帧换到末尾, 仍由 DGifCloseFile 释放
+            SavedImage merged = mGif->SavedImages[count];
+            mGif->SavedImages[count] = image;
+            image = merged;
+            mFrameDisposals[count] = mFrameDisposals[i];
+            mFrameTransparentColors[count] = mFrameTransparentColors[i];
+            mFrameDelays[count] = mFrameDelays[i];
+            mFrameFlags[count] = mFrameFlags[i];
+            mFrameColorMaps[count] = mFrameColorMaps[i];
+        }
+        count++;
+    }
+#if GIF_DEBUG
+    ALOGD("Gif collapsed %d frames into %d", imageCount, count);
+#endif
+    return count;
+}
+
+////////////////////////////////////////////////////////////////////////////////
+// RenderContext Implementation
+////////////////////////////////////////////////////////////////////////////////
+
+RenderContext::RenderContext(GifDecoder *decoder) : mDecoder(decoder) {
+    decoder->acquire();
+}
+
+RenderContext::~RenderContext() {
+    for (int i = 0; i < MAX_PRESERVE_SNAPSHOTS; i++) {
+        delete[] mPreserves[i].pixels;
+    }
+    mDecoder->release();
+}
+
+long RenderContext::drawFrame(int frameNr, Color8888 *outputPtr, int outputPixelStride,
+                              int previousFrameNr, int inSampleSize, const DrawRegion *crop) {
+    long delayMs = mDecoder->drawFrame(this, frameNr, outputPtr, outputPixelStride, previousFrameNr,
+                                       inSampleSize, crop);
+    if (delayMs >= 0) {
+        mFrameNr = frameNr;
+    }
+    return delayMs;
+}
+
+PreserveSnapshot *
+RenderContext::findPreserveBuffer(int frameNr, int inSampleSize, const DrawRegion &region) {
+    for (int i = 0; i < MAX_PRESERVE_SNAPSHOTS; i++) {
+        PreserveSnapshot &snapshot = mPreserves[i];
+        if (snapshot.frameNr == frameNr && snapshot.sampleSize == inSampleSize
+            && snapshot.region == region) {
+            snapshot.lastUse = ++mPreserveClock;
+            return &snapshot;
+        }
+    }
+    return NULL;
+}
+
+bool
+RenderContext::restorePreserveBuffer(Color8888 *outputPtr, int outputPixelStride, int frameNr,
+                                  int inSampleSize, const DrawRegion &region) {
+    const PreserveSnapshot *snapshot = findPreserveBuffer(frameNr, inSampleSize, region);
+    if (!snapshot) {
+        ALOGI("preserve buffer of frame %d not available.", frameNr);
+        return false;
     }
-    // 从上一帧的 Buffer 中拷贝数据
-    const int requestWidth = mGif->SWidth / inSampleSize;
-    const int requestHeight = mGif->SHeight / inSampleSize;
-    for (int y = 0; y < requestHeight; y++) {
-        memcpy(outputPtr + outputPixelStride * y, mPreserveBuffer + requestWidth * y,
-               requestWidth * 4);
+    // 只拷贝快照对应的区域
+    Color8888 *dst = outputPtr + snapshot->top * outputPixelStride + snapshot->left;
+    for (int y = 0; y < snapshot->height; y++) {
+        memcpy(dst + outputPixelStride * y, snapshot->pixels + snapshot->width * y,
+               snapshot->width * sizeof(Color8888));
     }
+    return true;
 }
 
 void
-GifDecoder::savePreserveBuffer(Color8888 *outputPtr, int outputPixelStride, int frameNr,
-                               int inSampleSize) {
-    if (frameNr == mPreserveBufferFrame) {
+RenderContext::savePreserveBuffer(Color8888 *outputPtr, int outputPixelStride, int frameNr,
+                                  int inSampleSize, const DrawRegion &region,
+                                  const DrawRegion &area) {
+    // 同一帧绘制前的画布内容总是相同的, 已有快照时无需重复保存
+    if (findPreserveBuffer(frameNr, inSampleSize, region)) {
         return;
     }
-    mPreserveBufferFrame = frameNr;
-    mPreserveSampleSize = inSampleSize;
-    const int width = mGif->SWidth / inSampleSize;
-    const int height = mGif->SHeight / inSampleSize;
-    if (!mPreserveBuffer) {
-        mPreserveBuffer = new Color8888[width * height];
+    // 复用最久未使用的快照
+    PreserveSnapshot *snapshot = &mPreserves[0];
+    for (int i = 1; i < MAX_PRESERVE_SNAPSHOTS; i++) {
+        if (mPreserves[i].lastUse < snapshot->lastUse) {
+            snapshot = &mPreserves[i];
+        }
+    }
+    if (snapshot->capacity < area.width * area.height) {
+        delete[] snapshot->pixels;
+        snapshot->pixels = new Color8888[area.width * area.height];
+        snapshot->capacity = area.width * area.height;
     }
-    for (int y = 0; y < height; y++) {
-        memcpy(mPreserveBuffer + width * y, outputPtr + outputPixelStride * y, width * 4);
+    snapshot->frameNr = frameNr;
+    snapshot->sampleSize = inSampleSize;
+    snapshot->region = region;
+    snapshot->left = area.left;
+    snapshot->top = area.top;
+    snapshot->width = area.width;
+    snapshot->height = area.height;
+    snapshot->lastUse = ++mPreserveClock;
+    const Color8888 *src = outputPtr + snapshot->top * outputPixelStride + snapshot->left;
+    for (int y = 0; y < snapshot->height; y++) {
+        memcpy(snapshot->pixels + snapshot->width * y, src + outputPixelStride * y,
+               snapshot->width * sizeof(Color8888));
     }
 }
 
@@ -339,6 +752,7 @@ GifDecoder::savePreserveBuffer(Color8888 *outputPtr, int outputPixelStride, int
 static jobject createJavaGifDecoder(JNIEnv *env, jclass jclazz, GifDecoder *decoder) {
     if (!decoder || !decoder->hasInit()) {
         ALOGE("Gif parsed failed. Please check input source and try again.");
+        delete decoder;
         return NULL;
     }
     // Create Java method.
@@ -357,17 +771,23 @@ static jobject createJavaGifDecoder(JNIEnv *env, jclass jclazz, GifDecoder *deco
 
 namespace gifdecoder {
 
-    jobject nativeDecodeFile(JNIEnv *env, jclass jclazz, jstring file_path) {
+    jobject nativeDecodeFile(JNIEnv *env, jclass jclazz, jstring file_path,
+                             jint maxFrameNr, jlong maxTimeMs) {
         char *filePath = const_cast<char *>(env->GetStringUTFChars(file_path, NULL));
-        GifDecoder *decoder = new GifDecoder(filePath);
+        GifDecoder *decoder = new GifDecoder(filePath, maxFrameNr, static_cast<long>(maxTimeMs));
         env->ReleaseStringUTFChars(file_path, filePath);
         return createJavaGifDecoder(env, jclazz, decoder);
     }
 
+    jobject nativeDecodeFileDescriptor(JNIEnv *env, jclass jclazz, jint fd) {
+        GifDecoder *decoder = new GifDecoder(fd);
+        return createJavaGifDecoder(env, jclazz, decoder);
+    }
+
     jobject nativeDecodeStream(JNIEnv *env, jclass jclazz, jobject istream,
-                               jbyteArray byteArray) {
+                               jbyteArray byteArray, jint maxFrameNr, jlong maxTimeMs) {
         JavaInputStream stream(env, istream, byteArray);
-        GifDecoder *decoder = new GifDecoder(&stream);
+        GifDecoder *decoder = new GifDecoder(&stream, maxFrameNr, static_cast<long>(maxTimeMs));
         return createJavaGifDecoder(env, jclazz, decoder);
     }
 
@@ -380,7 +800,7 @@ namespace gifdecoder {
             return NULL;
         }
         MemoryStream stream(bytes + offset, length, NULL);
-        GifDecoder *decoder = new GifDecoder(&stream);
+        GifDecoder *decoder = new GifDecoder(&stream, -1, -1, length);
         env->ReleasePrimitiveArrayCritical(byteArray, bytes, 0);
         return createJavaGifDecoder(env, jclazz, decoder);
     }
@@ -394,42 +814,165 @@ namespace gifdecoder {
                 (reinterpret_cast<uint8_t *>(env->GetDirectBufferAddress(globalBuf))) + offset,
                 limit,
                 globalBuf);
-        GifDecoder *decoder = new GifDecoder(&stream);
+        GifDecoder *decoder = new GifDecoder(&stream, -1, -1, limit);
+        // DGifSlurp 已经拷贝了所有数据, 不再需要持有 buffer
+        env->DeleteGlobalRef(globalBuf);
         // create java GifDecoder.
         return createJavaGifDecoder(env, jclazz, decoder);
     }
 
-    jlong nativeGetFrame(JNIEnv *env, jobject, jlong handle,
-                         jint frameNr, jobject bitmap, jint prevFrameNr, jint inSampleSize) {
+    jobject nativeDecodeFileDescriptorRange(JNIEnv *env, jclass jclazz, jint fd,
+                                            jlong offset, jlong length) {
+        if (length < 0) {
+            // 长度未知时读取到文件末尾
+            struct stat st;
+            if (fstat(fd, &st) != 0 || st.st_size <= offset) {
+                ALOGE("couldn't stat file descriptor");
+                return NULL;
+            }
+            length = st.st_size - offset;
+        }
+        // 直接映射文件中的区间, 如 APK 中未压缩的资源, mmap 的起始位置需要按页对齐
+        const off_t pageMask = (off_t) sysconf(_SC_PAGESIZE) - 1;
+        const off_t mapOffset = (off_t) offset & ~pageMask;
+        const size_t mapSize = (size_t) (offset - mapOffset + length);
+        void *addr = mmap(NULL, mapSize, PROT_READ, MAP_PRIVATE, fd, mapOffset);
+        if (addr == MAP_FAILED) {
+            ALOGE("couldn't map file descriptor");
+            return NULL;
+        }
+        MemoryStream stream(reinterpret_cast<uint8_t *>(addr) + (offset - mapOffset), (size_t) length, NULL);
+        GifDecoder *decoder = new GifDecoder(&stream, -1, -1, static_cast<long>(length));
+        // DGifSlurp 已经拷贝了所有数据, 不再需要映射
+        munmap(addr, mapSize);
+        return createJavaGifDecoder(env, jclazz, decoder);
+    }
+
+    jobject nativeDecodeAsset(JNIEnv *env, jclass jclazz, jobject assetManager, jstring path) {
+        AAssetManager *manager = AAssetManager_fromJava(env, assetManager);
+        const char *assetPath = env->GetStringUTFChars(path, NULL);
+        AAsset *asset = manager ? AAssetManager_open(manager, assetPath, AASSET_MODE_BUFFER) : NULL;
+        env->ReleaseStringUTFChars(path, assetPath);
+        if (!asset) {
+            ALOGE("couldn't open asset");
+            return NULL;
+        }
+        // 未压缩的 asset 直接返回 APK 的内存映射, 压缩的 asset 会先解压到一块内存中
+        const void *buffer = AAsset_getBuffer(asset);
+        GifDecoder *decoder = NULL;
+        if (buffer) {
+            const size_t length = (size_t) AAsset_getLength(asset);
+            MemoryStream stream(const_cast<void *>(buffer), length, NULL);
+            decoder = new GifDecoder(&stream, -1, -1, static_cast<long>(length));
+        }
+        AAsset_close(asset);
+        return createJavaGifDecoder(env, jclazz, decoder);
+    }
+
+    jlong nativeCreateRenderContext(JNIEnv *, jobject, jlong handle) {
         GifDecoder *decoder = reinterpret_cast<GifDecoder *>(handle);
+        return reinterpret_cast<jlong>(new RenderContext(decoder));
+    }
+
+    jlong nativeGetFrame(JNIEnv *env, jobject, jlong contextHandle,
+                         jint frameNr, jobject bitmap, jint prevFrameNr, jint inSampleSize,
+                         jint cropLeft, jint cropTop, jint cropWidth, jint cropHeight) {
+        RenderContext *context = reinterpret_cast<RenderContext *>(contextHandle);
         AndroidBitmapInfo info;
         void *pixels;
         AndroidBitmap_getInfo(env, bitmap, &info);
         AndroidBitmap_lockPixels(env, bitmap, &pixels);
         // 获取一行的像素数数量
         int pixelStride = info.stride >> 2;
-        jlong delayMs = decoder->drawFrame(frameNr, (Color8888 *) pixels, pixelStride,
-                                           prevFrameNr, inSampleSize);
+        // 输出区域不能超过 bitmap 的尺寸
+        DrawRegion crop;
+        crop.left = cropLeft;
+        crop.top = cropTop;
+        crop.width = min(cropWidth, (jint) info.width * inSampleSize);
+        crop.height = min(cropHeight, (jint) info.height * inSampleSize);
+        jlong delayMs = context->drawFrame(frameNr, (Color8888 *) pixels, pixelStride,
+                                           prevFrameNr, inSampleSize, &crop);
         AndroidBitmap_unlockPixels(env, bitmap);
         return delayMs;
     }
 
+    jintArray nativeGetFrameDelays(JNIEnv *env, jobject, jlong handle) {
+        GifDecoder *decoder = reinterpret_cast<GifDecoder *>(handle);
+        const int frameCount = decoder->getFrameCount();
+        jintArray delays = env->NewIntArray(frameCount);
+        if (delays == NULL) {
+            return NULL;
+        }
+        jint *delayPtr = env->GetIntArrayElements(delays, NULL);
+        for (int i = 0; i < frameCount; i++) {
+            delayPtr[i] = static_cast<jint>(decoder->getFrameDelay(i));
+        }
+        env->ReleaseIntArrayElements(delays, delayPtr, 0);
+        return delays;
+    }
+
+    // 与 Java 层 GifDecoder.FRAME_INFO_* 保持一致
+    static const int FRAME_INFO_STRIDE = 8;
+
+    jintArray nativeGetFrameInfo(JNIEnv *env, jobject, jlong handle) {
+        GifDecoder *decoder = reinterpret_cast<GifDecoder *>(handle);
+        const int frameCount = decoder->getFrameCount();
+        jintArray info = env->NewIntArray(frameCount * FRAME_INFO_STRIDE);
+        if (info == NULL) {
+            return NULL;
+        }
+        jint *infoPtr = env->GetIntArrayElements(info, NULL);
+        for (int i = 0; i < frameCount; i++) {
+            const GifImageDesc &desc = decoder->getFrameDesc(i);
+            jint *frameInfo = infoPtr + i * FRAME_INFO_STRIDE;
+            frameInfo[0] = desc.Left;
+            frameInfo[1] = desc.Top;
+            frameInfo[2] = desc.Width;
+            frameInfo[3] = desc.Height;
+            frameInfo[4] = decoder->getFrameDisposal(i);
+            frameInfo[5] = decoder->getFrameTransparentColor(i);
+            frameInfo[6] = static_cast<jint>(decoder->getFrameDelay(i));
+            frameInfo[7] = decoder->getFrameFlags(i);
+        }
+        env->ReleaseIntArrayElements(info, infoPtr, 0);
+        return info;
+    }
+
+    jint nativeGetRenderFrameNr(JNIEnv *, jobject, jlong contextHandle) {
+        RenderContext *context = reinterpret_cast<RenderContext *>(contextHandle);
+        return context->getFrameNr();
+    }
+
+    void nativeReleaseRenderContext(JNIEnv *, jobject, jlong contextHandle) {
+        RenderContext *context = reinterpret_cast<RenderContext *>(contextHandle);
+        delete context;
+    }
+
     void nativeDestroy(JNIEnv *, jobject, jlong native_ptr) {
         GifDecoder *decoder = reinterpret_cast<GifDecoder *>(native_ptr);
-        delete (decoder);
+        // 仍有 RenderContext 在使用时, 解析数据会在最后一个 RenderContext 释放时销毁
+        decoder->release();
     }
 
 }
 
 static JNINativeMethod gGifDecoderMethods[] = {
         // create method.
-        {"nativeDecodeFile",       "(Ljava/lang/String;)Lcom/sharry/lib/gif/GifDecoder;",      (void *) gifdecoder::nativeDecodeFile},
-        {"nativeDecodeStream",     "(Ljava/io/InputStream;[B)Lcom/sharry/lib/gif/GifDecoder;", (void *) gifdecoder::nativeDecodeStream},
-        {"nativeDecodeByteArray",  "([BII)Lcom/sharry/lib/gif/GifDecoder;",                    (void *) gifdecoder::nativeDecodeByteArray},
-        {"nativeDecodeByteBuffer", "(Ljava/nio/ByteBuffer;II)Lcom/sharry/lib/gif/GifDecoder;", (void *) gifdecoder::nativeDecodeByteBuffer},
+        {"nativeDecodeFile",                "(Ljava/lang/String;IJ)Lcom/sharry/lib/gif/GifDecoder;",                                 (void *) gifdecoder::nativeDecodeFile},
+        {"nativeDecodeFileDescriptor",      "(I)Lcom/sharry/lib/gif/GifDecoder;",                                                    (void *) gifdecoder::nativeDecodeFileDescriptor},
+        {"nativeDecodeStream",              "(Ljava/io/InputStream;[BIJ)Lcom/sharry/lib/gif/GifDecoder;",                            (void *) gifdecoder::nativeDecodeStream},
+        {"nativeDecodeByteArray",           "([BII)Lcom/sharry/lib/gif/GifDecoder;",                                                 (void *) gifdecoder::nativeDecodeByteArray},
+        {"nativeDecodeByteBuffer",          "(Ljava/nio/ByteBuffer;II)Lcom/sharry/lib/gif/GifDecoder;",                              (void *) gifdecoder::nativeDecodeByteBuffer},
+        {"nativeDecodeFileDescriptorRange", "(IJJ)Lcom/sharry/lib/gif/GifDecoder;",                                                  (void *) gifdecoder::nativeDecodeFileDescriptorRange},
+        {"nativeDecodeAsset",               "(Landroid/content/res/AssetManager;Ljava/lang/String;)Lcom/sharry/lib/gif/GifDecoder;", (void *) gifdecoder::nativeDecodeAsset},
         // other method.
-        {"nativeGetFrame",         "(JILandroid/graphics/Bitmap;II)J",                         (void *) gifdecoder::nativeGetFrame},
-        {"nativeDestroy",          "(J)V",                                                     (void *) gifdecoder::nativeDestroy},
+        {"nativeCreateRenderContext",       "(J)J",                                                                                  (void *) gifdecoder::nativeCreateRenderContext},
+        {"nativeGetFrame",                  "(JILandroid/graphics/Bitmap;IIIIII)J",                                                  (void *) gifdecoder::nativeGetFrame},
+        {"nativeGetFrameDelays",            "(J)[I",                                                                                 (void *) gifdecoder::nativeGetFrameDelays},
+        {"nativeGetFrameInfo",              "(J)[I",                                                                                 (void *) gifdecoder::nativeGetFrameInfo},
+        {"nativeGetRenderFrameNr",          "(J)I",                                                                                  (void *) gifdecoder::nativeGetRenderFrameNr},
+        {"nativeReleaseRenderContext",      "(J)V",                                                                                  (void *) gifdecoder::nativeReleaseRenderContext},
+        {"nativeDestroy",                   "(J)V",                                                                                  (void *) gifdecoder::nativeDestroy},
 };
 
 jint GifDecoder_OnLoad(JNIEnv *env) {
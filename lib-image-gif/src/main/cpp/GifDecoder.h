@@ -11,23 +11,106 @@
 #include "utils/color.h"
 #include "stream/Stream.h"
 
+// mFrameFlags 中的标记, 与 Java 层 GifDecoder.FRAME_FLAG_* 保持一致
+#define FRAME_FLAG_OPAQUE           0x01    // 没有透明色
+#define FRAME_FLAG_FULL_SCREEN      0x02    // 覆盖整个画布
+#define FRAME_FLAG_COVERS_PREVIOUS  0x04    // 不透明且完全覆盖上一帧
+#define FRAME_FLAG_KEY_FRAME        0x08    // 可以从空画布开始绘制
+#define FRAME_FLAG_SHARED_RASTER    0x10    // 与之前的某一帧共享像素数据, 解码后即释放自己的一份
+
+// 画布上的矩形区域
+struct DrawRegion {
+    int left = 0, top = 0, width = 0, height = 0;
+
+    bool operator==(const DrawRegion &other) const {
+        return left == other.left && top == other.top
+               && width == other.width && height == other.height;
+    }
+};
+
+// 最多同时缓存的 DISPOSE_PREVIOUS 快照数, 足够双缓冲交替绘制使用
+#define MAX_PRESERVE_SNAPSHOTS 4
+
+// DISPOSE_PREVIOUS 帧绘制前, 其区域内画布内容的快照
+struct PreserveSnapshot {
+    int frameNr = -1;
+    int sampleSize = 1;
+    // 绘制时的输出区域, 采样后的画布坐标系
+    DrawRegion region;
+    // 快照在输出中的区域
+    int left = 0, top = 0, width = 0, height = 0;
+    Color8888 *pixels = NULL;
+    int capacity = 0;
+    // 最近一次使用的时间, 用于淘汰最久未使用的快照
+    unsigned int lastUse = 0;
+};
+
+class GifDecoder;
+
+// 绘制状态: DISPOSE_PREVIOUS 快照与上一次绘制的帧, 每个线程各自持有, 多个 RenderContext 共享同一个 GifDecoder
+class RenderContext {
+
+private:
+    GifDecoder *mDecoder;
+    PreserveSnapshot mPreserves[MAX_PRESERVE_SNAPSHOTS];
+    unsigned int mPreserveClock = 0;
+    // 上一次绘制的帧, 还没有绘制过时为 -1
+    int mFrameNr = -1;
+
+    friend class GifDecoder;
+
+public:
+    // 持有 decoder 的一个引用, 析构时释放
+    RenderContext(GifDecoder *decoder);
+
+    ~RenderContext();
+
+    GifDecoder *getDecoder() const { return mDecoder; }
+
+    int getFrameNr() const { return mFrameNr; }
+
+    long drawFrame(int frameNr, Color8888 *outputPtr, int outputPixelStride, int previousFrameNr,
+                   int inSampleSize, const DrawRegion *crop = NULL);
+
+private:
+    // 查找指定帧在该 sampleSize 与输出区域下的快照, 没有时返回 NULL
+    PreserveSnapshot *findPreserveBuffer(int frameNr, int inSampleSize, const DrawRegion &region);
+
+    // 绘制 frameNr 之前, 保存其在输出中的区域 area 内的画布内容
+    void savePreserveBuffer(Color8888 *outputPtr, int outputPixelStride, int frameNr,
+                            int inSampleSize, const DrawRegion &region, const DrawRegion &area);
+
+    // 将 frameNr 的区域恢复为其绘制之前的内容
+    bool restorePreserveBuffer(Color8888 *outputPtr, int outputPixelStride, int frameNr,
+                               int inSampleSize, const DrawRegion &region);
+
+};
+
+// 解析后的 GIF 数据, 初始化之后不再修改, 可以被多个线程的 RenderContext 同时使用
 class GifDecoder {
 
 private:
     GifFileType *mGif;
-    // array of bool per frame - if true, frame data is used by a later DISPOSE_PREVIOUS frame
-    bool *mPreservedFrames = NULL;
-    // array of ints per frame - if >= 0, points to the index of the preserve that frame needs
-    int *mRestoringFrames = NULL;
+    // 合并连续重复帧之后的帧数, 合并掉的帧排在 mGif->SavedImages 的末尾
+    int mFrameCount = 0;
+    // 所有帧的解析数据都从这里分配, 析构时一次释放
+    GifArena *mArena = NULL;
+    // array of ints per frame - the nearest frame <= index which can be drawn from an empty canvas
+    int *mKeyFrames = NULL;
+    // 逐帧的元数据 (struct of arrays), 在 init 中一次性解析, 绘制时不再扫描扩展块
+    unsigned char *mFrameDisposals = NULL;
+    int *mFrameTransparentColors = NULL;
+    int *mFrameDelays = NULL;
+    unsigned char *mFrameFlags = NULL;
+    // 帧实际使用的色表, 局部色表优先, 都没有时为 NULL
+    const ColorMapObject **mFrameColorMaps = NULL;
+    // 之后第一个不透明且完全覆盖该帧的帧, 没有时为 -1, 绘制到其之后的帧时该帧无需合成
+    int *mFrameOverdrawnBy = NULL;
     // 缓存 Gif 的背景色
     Color8888 mBgColor = TRANSPARENT;
 
-    // 缓存上一帧的 Bitmap 数据
-    Color8888 *mPreserveBuffer = NULL;
-    // 缓存上一帧的 SampleSize
-    int mPreserveSampleSize = 1;
-    // 上一帧的 FrameNumber
-    int mPreserveBufferFrame;
+    // Java 层 GifDecoder 与每个 RenderContext 各持有一个引用
+    int mRefCount = 1;
 
     int mLoopCount = 1;
     long mDurationMs = 0l;
@@ -35,12 +118,22 @@ private:
 
 public:
 
-    GifDecoder(Stream *stream);
+    // maxFrameNr/maxTimeMs >= 0 stop reading the source once that frame is parsed, -1 parses all frames
+    // maxFrameNr 为文件中的原始帧序号, 合并重复帧之前的编号
+    // sourceSize 为数据长度, 用于预估解析所需的内存, 未知时传 -1
+    GifDecoder(Stream *stream, int maxFrameNr = -1, long maxTimeMs = -1, long sourceSize = -1);
 
-    GifDecoder(char *filePath);
+    GifDecoder(char *filePath, int maxFrameNr = -1, long maxTimeMs = -1);
+
+    GifDecoder(int fd);
 
     ~GifDecoder();
 
+    void acquire();
+
+    // 释放一个引用, 最后一个引用释放时销毁
+    void release();
+
     bool hasInit() {
         return mHasInit;
     }
@@ -55,7 +148,7 @@ public:
         return (mBgColor & COLOR_8888_ALPHA_MASK) == COLOR_8888_ALPHA_MASK;
     }
 
-    int getFrameCount() { return mHasInit ? mGif->ImageCount : 0; }
+    int getFrameCount() { return mHasInit ? mFrameCount : 0; }
 
     int getLooperCount() {
         return mLoopCount;
@@ -65,22 +158,44 @@ public:
         return mDurationMs;
     }
 
-    long drawFrame(int frameNr, Color8888 *outputPtr, int outputPixelStride, int previousFrameNr,
-                   int inSampleSize);
+    // 获取指定帧的展示时长, 单位 ms
+    long getFrameDelay(int frameNr) const;
+
+    int getFrameDisposal(int frameNr) const { return mFrameDisposals[frameNr]; }
+
+    int getFrameTransparentColor(int frameNr) const { return mFrameTransparentColors[frameNr]; }
+
+    int getFrameFlags(int frameNr) const { return mFrameFlags[frameNr]; }
+
+    const GifImageDesc &getFrameDesc(int frameNr) const { return mGif->SavedImages[frameNr].ImageDesc; }
+
+    // crop 为只绘制的画布区域, 原图坐标系, 为 NULL 时绘制整个画布; output 的左上角对应 crop 的左上角
+    // 绘制过程中的可变状态都保存在 context 中
+    long drawFrame(RenderContext *context, int frameNr, Color8888 *outputPtr, int outputPixelStride,
+                   int previousFrameNr, int inSampleSize, const DrawRegion *crop = NULL) const;
 
 private:
-    void init();
+    void init(int maxFrameNr, long maxTimeMs, long sourceSize);
+
+    // 读取 GIF 的帧数据, 读到指定的帧后停止, rasterOwners 返回每一帧像素数据的持有者
+    int slurp(int maxFrameNr, long maxTimeMs, int *&rasterOwners);
+
+    // 刚读取的帧与之前某一帧的像素相同时, 释放其像素数据并指向之前那一帧的, 返回持有像素数据的帧
+    int shareDuplicateRaster(int frameNr, uint64_t *hashes);
+
+    int getKeyFrame(int frameIndex) const { return mKeyFrames[frameIndex]; }
 
-    bool getPreservedFrame(int frameIndex) const { return mPreservedFrames[frameIndex]; }
+    // 上一帧被当前帧完全覆盖时无需处理其 disposal, 但当前帧绘制前需要保存快照时除外
+    bool isPrevFrameCovered(int frameNr, int inSampleSize) const;
 
-    int getRestoringFrame(int frameIndex) const { return mRestoringFrames[frameIndex]; }
+    // 绘制 targetFrameNr 的过程中, frameNr 是否会在其之前被完全覆盖, 此时无需合成 frameNr
+    bool isOverdrawnBefore(int frameNr, int targetFrameNr, int inSampleSize) const;
 
-    // 缓存上一帧的数据
-    void
-    savePreserveBuffer(Color8888 *outputPtr, int outputPixelStride, int frameNr, int inSampleSize);
+    // 计算 mFrameOverdrawnBy, 需在合并重复帧之后调用
+    void findOverdrawnFrames();
 
-    // 从上一帧中恢复数据
-    void restorePreserveBuffer(Color8888 *outputPtr, int outputPixelStride, int inSampleSize);
+    // 将连续的重复帧合并为一帧, 展示时长累加, 返回合并后的帧数
+    int collapseDuplicateFrames();
 
 };
 
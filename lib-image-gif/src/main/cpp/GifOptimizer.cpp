@@ -0,0 +1,660 @@
+//
+// Created by Sharry on 2026-10-18.
+//
+
+#include <malloc.h>
+#include <stdint.h>
+#include <string.h>
+#include "GifOptimizer.h"
+#include "utils/math.h"
+#include "utils/log.h"
+
+////////////////////////////////////////////////////////////////////////////////
+// helpers
+////////////////////////////////////////////////////////////////////////////////
+
+// GIF 中单次展示时长的上限, 单位 1/100 s
+static const int MAX_DELAY_TIME = 0xffff;
+// 小于该值的展示时长会被播放器替换为 100ms, 与 FrameSequenceDrawable.MIN_DELAY_MS 一致, 这类帧合并后会改变播放速度
+static const int MIN_DELAY_TIME = 2;
+
+static Color8888 gifColorToColor8888(const GifColorType &color) {
+    return ARGB_TO_COLOR8888(0xff, color.Red, color.Green, color.Blue);
+}
+
+static bool isInRegion(const DrawRegion &region, int x, int y) {
+    return x >= region.left && x < region.left + region.width
+           && y >= region.top && y < region.top + region.height;
+}
+
+// 色表的大小需要是 2 的幂, 至少为 2
+static int getColorMapSize(int colorCount) {
+    int size = 2;
+    while (size < colorCount) {
+        size <<= 1;
+    }
+    return size;
+}
+
+// 透明色总是排在 palette 的颜色之后
+static ColorMapObject *createColorMap(const Palette &palette, int transparentIndex) {
+    const int entryCount = palette.count + (transparentIndex == palette.count ? 1 : 0);
+    ColorMapObject *colorMap = GifMakeMapObject(getColorMapSize(entryCount), NULL);
+    if (!colorMap) {
+        return NULL;
+    }
+    for (int i = 0; i < palette.count; i++) {
+        const Color8888 color = palette.colors[i];
+        colorMap->Colors[i].Red = (GifByteType) (color & 0xff);
+        colorMap->Colors[i].Green = (GifByteType) ((color >> 8) & 0xff);
+        colorMap->Colors[i].Blue = (GifByteType) ((color >> 16) & 0xff);
+    }
+    return colorMap;
+}
+
+////////////////////////////////////////////////////////////////////////////////
+// Palette Implementation
+////////////////////////////////////////////////////////////////////////////////
+
+static const int PALETTE_SLOT_MASK = 1023;
+
+static int getPaletteSlot(Color8888 color) {
+    return (int) ((color * 2654435761u) >> 22) & PALETTE_SLOT_MASK;
+}
+
+void Palette::clear() {
+    count = 0;
+    memset(slots, 0, sizeof(slots));
+}
+
+int Palette::find(Color8888 color) const {
+    for (int slot = getPaletteSlot(color); slots[slot]; slot = (slot + 1) & PALETTE_SLOT_MASK) {
+        if (colors[slots[slot] - 1] == color) {
+            return slots[slot] - 1;
+        }
+    }
+    return -1;
+}
+
+int Palette::add(Color8888 color) {
+    int slot = getPaletteSlot(color);
+    for (; slots[slot]; slot = (slot + 1) & PALETTE_SLOT_MASK) {
+        if (colors[slots[slot] - 1] == color) {
+            return slots[slot] - 1;
+        }
+    }
+    if (count == 256) {
+        return -1;
+    }
+    colors[count] = color;
+    slots[slot] = (unsigned short) ++count;
+    return count - 1;
+}
+
+////////////////////////////////////////////////////////////////////////////////
+// GifOptimizer Implementation
+////////////////////////////////////////////////////////////////////////////////
+
+GifOptimizer::GifOptimizer(int inSampleSize) : mSampleSize(max(inSampleSize, 1)) {
+}
+
+GifOptimizer::~GifOptimizer() {
+    if (mSource) {
+        DGifCloseFile(mSource, NULL);
+    }
+    if (mOutput) {
+        EGifCloseFile(mOutput, NULL);
+    }
+    free(mCanvas);
+    free(mSavedCanvas);
+    free(mOutputCanvas);
+    free(mLine);
+    free(mPending.raster);
+    free(mBuilding.raster);
+}
+
+int GifOptimizer::optimize(const char *sourcePath, const char *outputPath, OptimizeReport *report) {
+    mReport = report;
+    int error;
+    mSource = DGifOpenFileName(sourcePath, &error);
+    if (!mSource) {
+        ALOGE("Couldn't open gif %s, error %d", sourcePath, error);
+        return OPTIMIZE_RESULT_READ_ERROR;
+    }
+    mWidth = mSource->SWidth / mSampleSize;
+    mHeight = mSource->SHeight / mSampleSize;
+    if (mWidth <= 0 || mHeight <= 0) {
+        // 画布小于采样率, 保留源文件
+        ALOGW("Gif %dx%d is smaller than sample size %d", mSource->SWidth, mSource->SHeight, mSampleSize);
+        return OPTIMIZE_RESULT_UNSUPPORTED;
+    }
+    report->outputWidth = mWidth;
+    report->outputHeight = mHeight;
+
+    // 只需要保存画布大小的数据, 与帧数无关
+    const size_t pixelCount = (size_t) mWidth * mHeight;
+    mCanvas = (Color8888 *) malloc(pixelCount * sizeof(Color8888));
+    mOutputCanvas = (Color8888 *) malloc(pixelCount * sizeof(Color8888));
+    mPending.raster = (GifByteType *) malloc(pixelCount);
+    mBuilding.raster = (GifByteType *) malloc(pixelCount);
+    if (!mCanvas || !mOutputCanvas || !mPending.raster || !mBuilding.raster) {
+        ALOGE("Couldn't allocate canvas of [%d, %d]", mWidth, mHeight);
+        return OPTIMIZE_RESULT_READ_ERROR;
+    }
+
+    mOutput = EGifOpenFileName(outputPath, false, &error);
+    if (!mOutput) {
+        ALOGE("Couldn't open output %s, error %d", outputPath, error);
+        return OPTIMIZE_RESULT_WRITE_ERROR;
+    }
+    int result = readFrames();
+    if (result == OPTIMIZE_RESULT_OK && !mHasPending) {
+        // 没有任何一帧
+        result = OPTIMIZE_RESULT_READ_ERROR;
+    }
+    if (result == OPTIMIZE_RESULT_OK) {
+        result = writeFrame(mPending);
+    }
+    if (result == OPTIMIZE_RESULT_OK) {
+        // 写入文件结束标记
+        const int closeResult = EGifCloseFile(mOutput, &error);
+        mOutput = NULL;
+        if (closeResult == GIF_ERROR) {
+            result = OPTIMIZE_RESULT_WRITE_ERROR;
+        }
+    }
+    return result;
+}
+
+int GifOptimizer::readFrames() {
+    GraphicsControlBlock gcb = {DISPOSAL_UNSPECIFIED, false, 0, NO_TRANSPARENT_COLOR};
+    GraphicsControlBlock prevGcb = gcb;
+    GifImageDesc prevDesc = {};
+    bool isFirstFrame = true;
+    GifRecordType recordType;
+    do {
+        if (DGifGetRecordType(mSource, &recordType) == GIF_ERROR) {
+            return OPTIMIZE_RESULT_READ_ERROR;
+        }
+        switch (recordType) {
+            case IMAGE_DESC_RECORD_TYPE: {
+                // 只读取帧头, 不会像 DGifGetImageDesc 一样为每一帧保存 SavedImage
+                if (DGifGetImageHeader(mSource) == GIF_ERROR) {
+                    return OPTIMIZE_RESULT_READ_ERROR;
+                }
+                int result = drawSourceFrame(gcb, prevGcb, prevDesc, isFirstFrame);
+                if (result != OPTIMIZE_RESULT_OK) {
+                    return result;
+                }
+                mReport->sourceFrameCount++;
+                mReport->sourcePixels += (long) mSource->Image.Width * mSource->Image.Height;
+                result = addFrame(gcb.DelayTime);
+                if (result != OPTIMIZE_RESULT_OK) {
+                    return result;
+                }
+                prevGcb = gcb;
+                prevDesc = mSource->Image;
+                isFirstFrame = false;
+                // GCE 只作用于紧随其后的一帧
+                gcb.DisposalMode = DISPOSAL_UNSPECIFIED;
+                gcb.DelayTime = 0;
+                gcb.TransparentColor = NO_TRANSPARENT_COLOR;
+                break;
+            }
+            case EXTENSION_RECORD_TYPE: {
+                int extCode;
+                GifByteType *ext;
+                if (DGifGetExtension(mSource, &extCode, &ext) == GIF_ERROR) {
+                    return OPTIMIZE_RESULT_READ_ERROR;
+                }
+                if (ext && extCode == GRAPHICS_EXT_FUNC_CODE) {
+                    DGifExtensionToGCB(ext[0], ext + 1, &gcb);
+                }
+                const bool isLoopExt = ext && extCode == APPLICATION_EXT_FUNC_CODE
+                                       && ext[0] == 11 && !memcmp(ext + 1, "NETSCAPE2.0", 11);
+                // 读取剩余的数据块, 注释等其他扩展块不会被写入输出
+                while (ext) {
+                    if (DGifGetExtensionNext(mSource, &ext) == GIF_ERROR) {
+                        return OPTIMIZE_RESULT_READ_ERROR;
+                    }
+                    if (ext && isLoopExt && ext[0] == 3 && ext[1] == 1) {
+                        mLoopCount = ext[2] | (ext[3] << 8);
+                    }
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    } while (recordType != TERMINATE_RECORD_TYPE);
+    return OPTIMIZE_RESULT_OK;
+}
+
+int GifOptimizer::drawSourceFrame(const GraphicsControlBlock &gcb, const GraphicsControlBlock &prevGcb,
+                                  const GifImageDesc &prevDesc, bool isFirstFrame) {
+    const size_t pixelCount = (size_t) mWidth * mHeight;
+    // 与 GifDecoder 的合成方式保持一致, 采样后的帧从其左上角开始每 mSampleSize 个像素取一个
+    if (isFirstFrame) {
+        const ColorMapObject *cmap = mSource->SColorMap;
+        Color8888 bgColor = TRANSPARENT;
+        if (cmap && gcb.TransparentColor == NO_TRANSPARENT_COLOR && mSource->SBackGroundColor < cmap->ColorCount) {
+            bgColor = gifColorToColor8888(cmap->Colors[mSource->SBackGroundColor]);
+        }
+        for (size_t i = 0; i < pixelCount; i++) {
+            mCanvas[i] = bgColor;
+        }
+    } else if (prevGcb.DisposalMode == DISPOSE_BACKGROUND) {
+        const int left = prevDesc.Left / mSampleSize;
+        const int top = prevDesc.Top / mSampleSize;
+        const int right = min(left + (prevDesc.Width + mSampleSize - 1) / mSampleSize, mWidth);
+        const int bottom = min(top + (prevDesc.Height + mSampleSize - 1) / mSampleSize, mHeight);
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) {
+                mCanvas[y * mWidth + x] = TRANSPARENT;
+            }
+        }
+    } else if (prevGcb.DisposalMode == DISPOSE_PREVIOUS) {
+        memcpy(mCanvas, mSavedCanvas, pixelCount * sizeof(Color8888));
+    }
+    if (gcb.DisposalMode == DISPOSE_PREVIOUS) {
+        // 只有包含 DISPOSE_PREVIOUS 帧的文件需要这块画布
+        if (!mSavedCanvas) {
+            mSavedCanvas = (Color8888 *) malloc(pixelCount * sizeof(Color8888));
+            if (!mSavedCanvas) {
+                return OPTIMIZE_RESULT_READ_ERROR;
+            }
+        }
+        memcpy(mSavedCanvas, mCanvas, pixelCount * sizeof(Color8888));
+    }
+
+    const GifImageDesc &desc = mSource->Image;
+    if (desc.Width <= 0 || desc.Height <= 0) {
+        // 空帧, 跳过其 LZW 数据
+        int codeSize;
+        GifByteType *code;
+        if (DGifGetCode(mSource, &codeSize, &code) == GIF_ERROR) {
+            return OPTIMIZE_RESULT_READ_ERROR;
+        }
+        while (code) {
+            if (DGifGetCodeNext(mSource, &code) == GIF_ERROR) {
+                return OPTIMIZE_RESULT_READ_ERROR;
+            }
+        }
+        return OPTIMIZE_RESULT_OK;
+    }
+    GifByteType *line = (GifByteType *) realloc(mLine, (size_t) desc.Width);
+    if (!line) {
+        return OPTIMIZE_RESULT_READ_ERROR;
+    }
+    mLine = line;
+    const ColorMapObject *cmap = desc.ColorMap ? desc.ColorMap : mSource->SColorMap;
+    const int left = desc.Left / mSampleSize;
+    const int top = desc.Top / mSampleSize;
+    const int width = min((desc.Width + mSampleSize - 1) / mSampleSize, mWidth - left);
+    // 交错存储的帧按 4 遍扫描的顺序给出各行
+    static const int interlacedOffsets[] = {0, 4, 2, 1};
+    static const int interlacedJumps[] = {8, 8, 4, 2};
+    int pass = 0;
+    int row = 0;
+    for (int i = 0; i < desc.Height; i++) {
+        // 每一行都需要读取, 以便解码后续的 LZW 数据
+        if (DGifGetLine(mSource, mLine, desc.Width) == GIF_ERROR) {
+            return OPTIMIZE_RESULT_READ_ERROR;
+        }
+        if (desc.Interlace) {
+            if (i > 0) {
+                row += interlacedJumps[pass];
+                while (row >= desc.Height) {
+                    row = interlacedOffsets[++pass];
+                }
+            }
+        } else {
+            row = i;
+        }
+        const int y = top + row / mSampleSize;
+        if (!cmap || row % mSampleSize || y >= mHeight) {
+            continue;
+        }
+        Color8888 *dst = mCanvas + y * mWidth + left;
+        const GifByteType *src = mLine;
+        for (int x = 0; x < width; x++, src += mSampleSize) {
+            if (*src != gcb.TransparentColor && *src < cmap->ColorCount) {
+                dst[x] = gifColorToColor8888(cmap->Colors[*src]);
+            }
+        }
+    }
+    return OPTIMIZE_RESULT_OK;
+}
+
+bool GifOptimizer::diffCanvas(const DrawRegion &disposed, DrawRegion &changed) const {
+    int left = mWidth, top = mHeight, right = 0, bottom = 0;
+    bool needsClear = false;
+    for (int y = 0; y < mHeight; y++) {
+        const Color8888 *target = mCanvas + y * mWidth;
+        const Color8888 *base = mOutputCanvas + y * mWidth;
+        for (int x = 0; x < mWidth; x++) {
+            const Color8888 baseColor = isInRegion(disposed, x, y) ? TRANSPARENT : base[x];
+            if (target[x] == baseColor) {
+                continue;
+            }
+            // 绘制透明色不会改变画布, 变为透明的像素只能通过 disposal 清除
+            needsClear |= target[x] == TRANSPARENT;
+            left = min(left, x);
+            right = max(right, x + 1);
+            top = min(top, y);
+            bottom = y + 1;
+        }
+    }
+    changed.left = left;
+    changed.top = top;
+    changed.width = max(right - left, 0);
+    changed.height = max(bottom - top, 0);
+    return needsClear;
+}
+
+int GifOptimizer::addFrame(int delay) {
+    DrawRegion canvas;
+    canvas.width = mWidth;
+    canvas.height = mHeight;
+    if (!mHasPending) {
+        // 输出的第一帧覆盖整个画布, 其颜色作为全局色表
+        if (!encodeFrame(canvas, canvas)) {
+            return OPTIMIZE_RESULT_UNSUPPORTED;
+        }
+        mGlobalColors = mBuilding.colors;
+        mGlobalTransparentIndex = mBuilding.transparentIndex;
+        if (mGlobalTransparentIndex == NO_TRANSPARENT_COLOR
+            && getColorMapSize(mGlobalColors.count) > mGlobalColors.count) {
+            // 色表补齐到 2 的幂之后有空余, 预留给之后的帧作为透明色
+            mGlobalTransparentIndex = mGlobalColors.count;
+        }
+        mBuilding.useGlobalColorMap = true;
+        int result = writeHeader();
+        if (result != OPTIMIZE_RESULT_OK) {
+            return result;
+        }
+    } else {
+        DrawRegion disposed;
+        DrawRegion changed;
+        bool needsClear = diffCanvas(disposed, changed);
+        if (changed.width == 0 && mPending.delay >= MIN_DELAY_TIME && delay >= MIN_DELAY_TIME
+            && mPending.delay + delay <= MAX_DELAY_TIME) {
+            // 与上一帧完全相同, 合并为一帧
+            mPending.delay += delay;
+            return OPTIMIZE_RESULT_OK;
+        }
+        if (needsClear) {
+            // 上一帧结束时清除其区域, 再比较一次
+            disposed = mPending.area;
+            needsClear = diffCanvas(disposed, changed);
+        }
+        if (needsClear) {
+            // 仍有需要变为透明的像素时, 将上一帧扩大到整个画布后清除
+            if (!ensureTransparentIndex(mPending)) {
+                return OPTIMIZE_RESULT_UNSUPPORTED;
+            }
+            expandToCanvas(mPending);
+            disposed = canvas;
+            diffCanvas(disposed, changed);
+        }
+        mPending.disposal = disposed.width > 0 ? DISPOSE_BACKGROUND : DISPOSE_DO_NOT;
+        if (changed.width == 0) {
+            // 一帧至少需要一个像素, 使用透明色保持画布不变
+            changed.left = 0;
+            changed.top = 0;
+            changed.width = 1;
+            changed.height = 1;
+        }
+        if (!encodeFrame(disposed, changed)) {
+            return OPTIMIZE_RESULT_UNSUPPORTED;
+        }
+        int result = writeFrame(mPending);
+        if (result != OPTIMIZE_RESULT_OK) {
+            return result;
+        }
+    }
+    // mBuilding 成为新的待写入帧
+    GifByteType *raster = mPending.raster;
+    mPending = mBuilding;
+    mBuilding.raster = raster;
+    mPending.delay = delay;
+    mPending.disposal = DISPOSE_DO_NOT;
+    mHasPending = true;
+    memcpy(mOutputCanvas, mCanvas, (size_t) mWidth * mHeight * sizeof(Color8888));
+    return OPTIMIZE_RESULT_OK;
+}
+
+bool GifOptimizer::encodeFrame(const DrawRegion &disposed, const DrawRegion &area) {
+    PendingFrame &frame = mBuilding;
+    Palette &palette = frame.colors;
+    // 优先将没有变化的像素写为透明色, 连续的透明色更利于 LZW 压缩
+    bool keepOpaque = false;
+    bool needsTransparent = false;
+    bool overflow = false;
+    palette.clear();
+    for (int y = area.top; y < area.top + area.height; y++) {
+        for (int x = area.left; x < area.left + area.width; x++) {
+            const Color8888 target = mCanvas[y * mWidth + x];
+            const Color8888 base = isInRegion(disposed, x, y) ? TRANSPARENT : mOutputCanvas[y * mWidth + x];
+            if (target == base) {
+                needsTransparent = true;
+            } else if (palette.add(target) < 0) {
+                overflow = true;
+            }
+        }
+    }
+    if (overflow || (needsTransparent && palette.count == 256)) {
+        // 颜色过多时, 没有变化的不透明像素也写入其颜色, 只有透明的像素使用透明色
+        keepOpaque = true;
+        needsTransparent = false;
+        overflow = false;
+        palette.clear();
+        for (int y = area.top; y < area.top + area.height; y++) {
+            for (int x = area.left; x < area.left + area.width; x++) {
+                const Color8888 target = mCanvas[y * mWidth + x];
+                if (target == TRANSPARENT) {
+                    needsTransparent = true;
+                } else if (palette.add(target) < 0) {
+                    overflow = true;
+                }
+            }
+        }
+        if (overflow || (needsTransparent && palette.count == 256)) {
+            return false;
+        }
+    }
+
+    // 颜色都在全局色表中时, 不再写入局部色表
+    frame.useGlobalColorMap = false;
+    if (mHasPending && (!needsTransparent || mGlobalTransparentIndex != NO_TRANSPARENT_COLOR)) {
+        frame.useGlobalColorMap = true;
+        for (int i = 0; i < palette.count; i++) {
+            if (mGlobalColors.find(palette.colors[i]) < 0) {
+                frame.useGlobalColorMap = false;
+                break;
+            }
+        }
+    }
+    const Palette &colorMap = frame.useGlobalColorMap ? mGlobalColors : palette;
+    if (needsTransparent) {
+        frame.transparentIndex = frame.useGlobalColorMap ? mGlobalTransparentIndex : palette.count;
+    } else {
+        frame.transparentIndex = NO_TRANSPARENT_COLOR;
+    }
+
+    frame.area = area;
+    GifByteType *dst = frame.raster;
+    for (int y = area.top; y < area.top + area.height; y++) {
+        for (int x = area.left; x < area.left + area.width; x++, dst++) {
+            const Color8888 target = mCanvas[y * mWidth + x];
+            const Color8888 base = isInRegion(disposed, x, y) ? TRANSPARENT : mOutputCanvas[y * mWidth + x];
+            if (target == TRANSPARENT || (target == base && !keepOpaque)) {
+                *dst = (GifByteType) frame.transparentIndex;
+            } else {
+                *dst = (GifByteType) colorMap.find(target);
+            }
+        }
+    }
+    return true;
+}
+
+bool GifOptimizer::ensureTransparentIndex(PendingFrame &frame) {
+    if (frame.transparentIndex != NO_TRANSPARENT_COLOR) {
+        return true;
+    }
+    if (frame.useGlobalColorMap) {
+        if (mGlobalTransparentIndex != NO_TRANSPARENT_COLOR) {
+            frame.transparentIndex = mGlobalTransparentIndex;
+            return true;
+        }
+        // 全局色表没有预留透明色时, 改为使用与全局色表相同的局部色表, 像素的索引不变
+        if (mGlobalColors.count == 256) {
+            return false;
+        }
+        frame.colors = mGlobalColors;
+        frame.useGlobalColorMap = false;
+    } else if (frame.colors.count == 256) {
+        return false;
+    }
+    frame.transparentIndex = frame.colors.count;
+    return true;
+}
+
+void GifOptimizer::expandToCanvas(PendingFrame &frame) {
+    const DrawRegion &area = frame.area;
+    GifByteType *raster = frame.raster;
+    const GifByteType transparent = (GifByteType) frame.transparentIndex;
+    // 从最后一行开始向后移动, 每一行的目标位置都不早于其原位置, 不会覆盖还未移动的行
+    for (int y = area.height - 1; y >= 0; y--) {
+        memmove(raster + (area.top + y) * mWidth + area.left, raster + y * area.width, (size_t) area.width);
+    }
+    for (int y = 0; y < mHeight; y++) {
+        GifByteType *line = raster + y * mWidth;
+        if (y < area.top || y >= area.top + area.height) {
+            memset(line, transparent, (size_t) mWidth);
+        } else {
+            memset(line, transparent, (size_t) area.left);
+            memset(line + area.left + area.width, transparent, (size_t) (mWidth - area.left - area.width));
+        }
+    }
+    frame.area.left = 0;
+    frame.area.top = 0;
+    frame.area.width = mWidth;
+    frame.area.height = mHeight;
+}
+
+int GifOptimizer::writeHeader() {
+    EGifSetGifVersion(mOutput, true);
+    ColorMapObject *colorMap = createColorMap(mGlobalColors, mGlobalTransparentIndex);
+    if (!colorMap) {
+        return OPTIMIZE_RESULT_WRITE_ERROR;
+    }
+    const int result = EGifPutScreenDesc(mOutput, mWidth, mHeight, 8, 0, colorMap);
+    GifFreeMapObject(colorMap);
+    if (result == GIF_ERROR) {
+        return OPTIMIZE_RESULT_WRITE_ERROR;
+    }
+    if (mLoopCount >= 0) {
+        const GifByteType loop[] = {1, (GifByteType) (mLoopCount & 0xff), (GifByteType) (mLoopCount >> 8)};
+        if (EGifPutExtensionLeader(mOutput, APPLICATION_EXT_FUNC_CODE) == GIF_ERROR
+            || EGifPutExtensionBlock(mOutput, 11, "NETSCAPE2.0") == GIF_ERROR
+            || EGifPutExtensionBlock(mOutput, 3, loop) == GIF_ERROR
+            || EGifPutExtensionTrailer(mOutput) == GIF_ERROR) {
+            return OPTIMIZE_RESULT_WRITE_ERROR;
+        }
+    }
+    return OPTIMIZE_RESULT_OK;
+}
+
+int GifOptimizer::writeFrame(const PendingFrame &frame) {
+    GraphicsControlBlock gcb;
+    gcb.DisposalMode = frame.disposal;
+    gcb.UserInputFlag = false;
+    gcb.DelayTime = min(frame.delay, MAX_DELAY_TIME);
+    gcb.TransparentColor = frame.transparentIndex;
+    GifByteType ext[4];
+    const size_t extLength = EGifGCBToExtension(&gcb, ext);
+    if (EGifPutExtension(mOutput, GRAPHICS_EXT_FUNC_CODE, (int) extLength, ext) == GIF_ERROR) {
+        return OPTIMIZE_RESULT_WRITE_ERROR;
+    }
+
+    ColorMapObject *colorMap = NULL;
+    if (!frame.useGlobalColorMap) {
+        colorMap = createColorMap(frame.colors, frame.transparentIndex);
+        if (!colorMap) {
+            return OPTIMIZE_RESULT_WRITE_ERROR;
+        }
+    } else if (mOutput->Image.ColorMap) {
+        // EGifPutImageDesc 传入 NULL 时不会释放上一帧的局部色表
+        GifFreeMapObject(mOutput->Image.ColorMap);
+        mOutput->Image.ColorMap = NULL;
+    }
+    const DrawRegion &area = frame.area;
+    int result = EGifPutImageDesc(mOutput, area.left, area.top, area.width, area.height, false, colorMap);
+    GifFreeMapObject(colorMap);
+    for (int y = 0; y < area.height && result != GIF_ERROR; y++) {
+        result = EGifPutLine(mOutput, frame.raster + y * area.width, area.width);
+    }
+    if (result == GIF_ERROR) {
+        return OPTIMIZE_RESULT_WRITE_ERROR;
+    }
+    mReport->outputFrameCount++;
+    mReport->outputPixels += (long) area.width * area.height;
+    return OPTIMIZE_RESULT_OK;
+}
+
+////////////////////////////////////////////////////////////////////////////////
+// JNILoader
+////////////////////////////////////////////////////////////////////////////////
+
+// 与 Java 层 GifOptimizer.REPORT_* 保持一致
+enum {
+    REPORT_SOURCE_PIXELS = 0,
+    REPORT_OUTPUT_PIXELS,
+    REPORT_SOURCE_FRAME_COUNT,
+    REPORT_OUTPUT_FRAME_COUNT,
+    REPORT_OUTPUT_WIDTH,
+    REPORT_OUTPUT_HEIGHT,
+    REPORT_SIZE
+};
+
+namespace gifoptimizer {
+
+    jint nativeOptimize(JNIEnv *env, jclass, jstring source_path, jstring output_path,
+                        jint inSampleSize, jlongArray report) {
+        const char *sourcePath = env->GetStringUTFChars(source_path, NULL);
+        const char *outputPath = env->GetStringUTFChars(output_path, NULL);
+        OptimizeReport optimizeReport;
+        int result;
+        {
+            // 析构时关闭文件, 释放画布
+            GifOptimizer optimizer(inSampleSize);
+            result = optimizer.optimize(sourcePath, outputPath, &optimizeReport);
+        }
+        env->ReleaseStringUTFChars(source_path, sourcePath);
+        env->ReleaseStringUTFChars(output_path, outputPath);
+        jlong values[REPORT_SIZE];
+        values[REPORT_SOURCE_PIXELS] = optimizeReport.sourcePixels;
+        values[REPORT_OUTPUT_PIXELS] = optimizeReport.outputPixels;
+        values[REPORT_SOURCE_FRAME_COUNT] = optimizeReport.sourceFrameCount;
+        values[REPORT_OUTPUT_FRAME_COUNT] = optimizeReport.outputFrameCount;
+        values[REPORT_OUTPUT_WIDTH] = optimizeReport.outputWidth;
+        values[REPORT_OUTPUT_HEIGHT] = optimizeReport.outputHeight;
+        env->SetLongArrayRegion(report, 0, REPORT_SIZE, values);
+        return result;
+    }
+
+}
+
+static JNINativeMethod gGifOptimizerMethods[] = {
+        {"nativeOptimize", "(Ljava/lang/String;Ljava/lang/String;I[J)I", (void *) gifoptimizer::nativeOptimize},
+};
+
+jint GifOptimizer_OnLoad(JNIEnv *env) {
+    jclass jclsGifOptimizer = env->FindClass("com/sharry/lib/gif/GifOptimizer");
+    return env->RegisterNatives(
+            jclsGifOptimizer,
+            gGifOptimizerMethods,
+            sizeof(gGifOptimizerMethods) / sizeof(gGifOptimizerMethods[0])
+    );
+}
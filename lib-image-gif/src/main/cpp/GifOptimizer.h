@@ -0,0 +1,121 @@
+//
+// Created by Sharry on 2026-10-18.
+//
+
+#ifndef SCOMPRESSOR_GIFOPTIMIZER_H
+#define SCOMPRESSOR_GIFOPTIMIZER_H
+
+#include <jni.h>
+#include "GifDecoder.h"
+
+// optimize 的返回值, 与 Java 层 GifOptimizer.RESULT_* 保持一致
+#define OPTIMIZE_RESULT_OK          0
+#define OPTIMIZE_RESULT_READ_ERROR  1   // 源文件无法读取或已损坏
+#define OPTIMIZE_RESULT_WRITE_ERROR 2   // 输出文件无法写入
+#define OPTIMIZE_RESULT_UNSUPPORTED 3   // 无法无损地重新编码, 如同一帧需要超过 256 种颜色或画布小于采样率
+
+// 每个文件的优化统计, 解码成本以 LZW 需要解码的像素数衡量
+struct OptimizeReport {
+    long sourcePixels = 0;
+    long outputPixels = 0;
+    int sourceFrameCount = 0;
+    int outputFrameCount = 0;
+    int outputWidth = 0;
+    int outputHeight = 0;
+};
+
+// 色表中一种颜色的索引, 颜色数不超过 256
+struct Palette {
+    Color8888 colors[256];
+    int count = 0;
+    // 开放寻址的哈希表, 保存 colors 的下标 + 1, 0 为空
+    unsigned short slots[1024];
+
+    void clear();
+
+    // 返回颜色的下标, 不存在时返回 -1
+    int find(Color8888 color) const;
+
+    // 返回颜色的下标, 色表已满时返回 -1
+    int add(Color8888 color);
+};
+
+// 编码好的一帧, 在下一帧确定其 disposal 之前暂存
+struct PendingFrame {
+    DrawRegion area;
+    GifByteType *raster = NULL;
+    // 使用全局色表时 colors 为空
+    bool useGlobalColorMap = false;
+    Palette colors;
+    int transparentIndex = NO_TRANSPARENT_COLOR;
+    // 单位 1/100 s
+    int delay = 0;
+    int disposal = DISPOSE_DO_NOT;
+};
+
+// 流式地逐帧解码 GIF, 合成后与上一帧比较, 只重新编码发生变化的区域
+// 内存占用只与画布尺寸有关, 与帧数无关; 每个实例只能同时被一个线程使用
+class GifOptimizer {
+
+private:
+    // 输出的采样率, 与 GifDecoder 的 inSampleSize 一致
+    const int mSampleSize;
+    GifFileType *mSource = NULL;
+    GifFileType *mOutput = NULL;
+    // 采样后的画布尺寸
+    int mWidth = 0, mHeight = 0;
+    // 源文件合成到当前帧的画布
+    Color8888 *mCanvas = NULL;
+    // DISPOSE_PREVIOUS 帧绘制前的画布
+    Color8888 *mSavedCanvas = NULL;
+    // 输出文件绘制完 mPending 之后的画布
+    Color8888 *mOutputCanvas = NULL;
+    GifByteType *mLine = NULL;
+    PendingFrame mPending;
+    bool mHasPending = false;
+    PendingFrame mBuilding;
+    // 全局色表取自输出的第一帧, 有空余时预留一个透明色
+    Palette mGlobalColors;
+    int mGlobalTransparentIndex = NO_TRANSPARENT_COLOR;
+    int mLoopCount = -1;
+    OptimizeReport *mReport = NULL;
+
+public:
+    GifOptimizer(int inSampleSize);
+
+    ~GifOptimizer();
+
+    // 将 sourcePath 优化后写入 outputPath, 返回 OPTIMIZE_RESULT_*
+    int optimize(const char *sourcePath, const char *outputPath, OptimizeReport *report);
+
+private:
+    int readFrames();
+
+    // 将源文件的一帧合成到 mCanvas
+    int drawSourceFrame(const GraphicsControlBlock &gcb, const GraphicsControlBlock &prevGcb,
+                        const GifImageDesc &prevDesc, bool isFirstFrame);
+
+    // 比较 mCanvas 与清除了 disposed 区域的 mOutputCanvas, 返回是否有需要变为透明的像素
+    bool diffCanvas(const DrawRegion &disposed, DrawRegion &changed) const;
+
+    // mCanvas 合成完一帧之后, 与 mOutputCanvas 比较并编码变化的区域
+    int addFrame(int delay);
+
+    // 以清除了 disposed 区域的 mOutputCanvas 为底, 将 mCanvas 在 area 内的内容编码到 mBuilding
+    bool encodeFrame(const DrawRegion &disposed, const DrawRegion &area);
+
+    // 保证帧有透明色, 用于扩大其区域
+    bool ensureTransparentIndex(PendingFrame &frame);
+
+    // 将帧扩大到整个画布, 新增的区域为透明色
+    void expandToCanvas(PendingFrame &frame);
+
+    int writeFrame(const PendingFrame &frame);
+
+    int writeHeader();
+
+};
+
+jint GifOptimizer_OnLoad(JNIEnv *env);
+
+#endif //SCOMPRESSOR_GIFOPTIMIZER_H
@@ -47,6 +47,16 @@ static int DGifSetupDecompress(GifFileType *GifFile);
 static int DGifDecompressLine(GifFileType *GifFile, GifPixelType *Line,
                               int LineLen);
 
+static ColorMapObject *DGifMakeMapObject(GifFileType *GifFile, int ColorCount);
+
+static void DGifFreeMapObject(GifFileType *GifFile, ColorMapObject *Object);
+
+static int DGifAddExtensionBlock(GifFileType *GifFile, int Function,
+                                 unsigned int Len, unsigned char ExtData[]);
+
+static int DGifDecompressImage(GifFileType *GifFile, GifPixelType *Pixels,
+                               int Len);
+
 static int DGifGetPrefixChar(GifPrefixType *Prefix, int Code, int ClearCode);
 
 static int DGifDecompressInput(GifFileType *GifFile, int *Code);
@@ -375,7 +385,7 @@ DGifGetImageHeader(GifFileType *GifFile) {
         return GIF_ERROR;
     if (InternalRead(GifFile, Buf, 1) != 1) {
         GifFile->Error = D_GIF_ERR_READ_FAILED;
-        GifFreeMapObject(GifFile->Image.ColorMap);
+        DGifFreeMapObject(GifFile, GifFile->Image.ColorMap);
         GifFile->Image.ColorMap = NULL;
         return GIF_ERROR;
     }
@@ -384,14 +394,14 @@ DGifGetImageHeader(GifFileType *GifFile) {
 
     /* Setup the colormap */
     if (GifFile->Image.ColorMap) {
-        GifFreeMapObject(GifFile->Image.ColorMap);
+        DGifFreeMapObject(GifFile, GifFile->Image.ColorMap);
         GifFile->Image.ColorMap = NULL;
     }
     /* Does this image have local color map? */
     if (Buf[0] & 0x80) {
         unsigned int i;
 
-        GifFile->Image.ColorMap = GifMakeMapObject(1 << BitsPerPixel, NULL);
+        GifFile->Image.ColorMap = DGifMakeMapObject(GifFile, 1 << BitsPerPixel);
         if (GifFile->Image.ColorMap == NULL) {
             GifFile->Error = D_GIF_ERR_NOT_ENOUGH_MEM;
             return GIF_ERROR;
@@ -401,7 +411,7 @@ DGifGetImageHeader(GifFileType *GifFile) {
         for (i = 0; i < GifFile->Image.ColorMap->ColorCount; i++) {
             /* coverity[check_return] */
             if (InternalRead(GifFile, Buf, 3) != 3) {
-                GifFreeMapObject(GifFile->Image.ColorMap);
+                DGifFreeMapObject(GifFile, GifFile->Image.ColorMap);
                 GifFile->Error = D_GIF_ERR_READ_FAILED;
                 GifFile->Image.ColorMap = NULL;
                 return GIF_ERROR;
@@ -438,7 +448,22 @@ DGifGetImageDesc(GifFileType *GifFile) {
         return GIF_ERROR;
     }
 
-    if (GifFile->SavedImages) {
+    if (Private->Arena != NULL) {
+        /* Grow by doubling, the smaller arrays are left in the arena. */
+        if ((GifFile->ImageCount & (GifFile->ImageCount - 1)) == 0) {
+            SavedImage *new_saved_images = (SavedImage *) GifArenaAlloc(
+                    Private->Arena,
+                    (GifFile->ImageCount ? GifFile->ImageCount * 2 : 1) * sizeof(SavedImage));
+            if (new_saved_images == NULL) {
+                GifFile->Error = D_GIF_ERR_NOT_ENOUGH_MEM;
+                return GIF_ERROR;
+            }
+            if (GifFile->ImageCount)
+                memcpy(new_saved_images, GifFile->SavedImages,
+                       GifFile->ImageCount * sizeof(SavedImage));
+            GifFile->SavedImages = new_saved_images;
+        }
+    } else if (GifFile->SavedImages) {
         SavedImage *new_saved_images =
                 (SavedImage *) reallocarray(GifFile->SavedImages,
                                             (GifFile->ImageCount + 1), sizeof(SavedImage));
@@ -457,7 +482,10 @@ DGifGetImageDesc(GifFileType *GifFile) {
 
     sp = &GifFile->SavedImages[GifFile->ImageCount];
     memcpy(&sp->ImageDesc, &GifFile->Image, sizeof(GifImageDesc));
-    if (GifFile->Image.ColorMap != NULL) {
+    if (GifFile->Image.ColorMap != NULL && Private->Arena != NULL) {
+        /* Never freed by DGifGetImageHeader(), so it can be shared. */
+        sp->ImageDesc.ColorMap = GifFile->Image.ColorMap;
+    } else if (GifFile->Image.ColorMap != NULL) {
         sp->ImageDesc.ColorMap = GifMakeMapObject(
                 GifFile->Image.ColorMap->ColorCount,
                 GifFile->Image.ColorMap->Colors);
@@ -549,6 +577,71 @@ DGifGetPixel(GifFileType *GifFile, GifPixelType Pixel) {
         return GIF_ERROR;
 }
 
+/******************************************************************************
+ Get the whole image (after DGifGetImageDesc) into Raster in one call,
+ de-interlacing it if needed. The pixels are exactly those DGifGetLine()
+ would return, but decoded by DGifDecompressImage() which is much faster.
+******************************************************************************/
+int
+DGifGetImage(GifFileType *GifFile, GifPixelType *Raster) {
+    static const int InterlacedOffset[] = {0, 4, 2, 1};
+    static const int InterlacedJumps[] = {8, 8, 4, 2};
+    int i, j, Result, Width, Height;
+    GifByteType *Dummy;
+    GifPixelType *Pixels, *Row;
+    GifFilePrivateType *Private = (GifFilePrivateType *) GifFile->Private;
+
+    if (!IS_READABLE(Private)) {
+        /* This file was NOT open for reading: */
+        GifFile->Error = D_GIF_ERR_NOT_READABLE;
+        return GIF_ERROR;
+    }
+
+    Width = GifFile->Image.Width;
+    Height = GifFile->Image.Height;
+    /* Only a whole image not read from yet can be decoded in one go. */
+    if (Width <= 0 || Height <= 0 || Width > INT_MAX / Height ||
+        Private->PixelCount != (unsigned long) Width * Height ||
+        Private->StackPtr != 0) {
+        GifFile->Error = D_GIF_ERR_DATA_TOO_BIG;
+        return GIF_ERROR;
+    }
+    Private->PixelCount = 0;
+
+    if (GifFile->Image.Interlace) {
+        /* Decode in stream order, then move the rows where they belong. */
+        Pixels = (GifPixelType *) malloc((size_t) Width * Height);
+        if (Pixels == NULL) {
+            GifFile->Error = D_GIF_ERR_NOT_ENOUGH_MEM;
+            return GIF_ERROR;
+        }
+    } else
+        Pixels = Raster;
+
+    Result = DGifDecompressImage(GifFile, Pixels, Width * Height);
+    if (Pixels != Raster) {
+        if (Result == GIF_OK) {
+            Row = Pixels;
+            for (i = 0; i < 4; i++)
+                for (j = InterlacedOffset[i]; j < Height; j += InterlacedJumps[i]) {
+                    memcpy(Raster + (size_t) j * Width, Row, Width);
+                    Row += Width;
+                }
+        }
+        free(Pixels);
+    }
+    if (Result == GIF_ERROR)
+        return GIF_ERROR;
+
+    /* Flush out the rest of the image until an empty block, as
+     * DGifGetLine() does once the last pixel was read. */
+    do
+        if (DGifGetCodeNext(GifFile, &Dummy) == GIF_ERROR)
+            return GIF_ERROR;
+    while (Dummy != NULL);
+    return GIF_OK;
+}
+
 /******************************************************************************
  Get an extension block (see GIF manual) from GIF file. This routine only
  returns the first data block, and DGifGetExtensionNext should be called
@@ -668,6 +761,16 @@ DGifCloseFile(GifFileType *GifFile, int *ErrorCode) {
     if (GifFile == NULL || GifFile->Private == NULL)
         return GIF_ERROR;
 
+    Private = (GifFilePrivateType *) GifFile->Private;
+    if (Private->Arena != NULL) {
+        /* Everything read since DGifSetArena() goes with the arena. */
+        GifFile->Image.ColorMap = NULL;
+        GifFile->SavedImages = NULL;
+        GifFile->ImageCount = 0;
+        GifFile->ExtensionBlocks = NULL;
+        GifFile->ExtensionBlockCount = 0;
+    }
+
     if (GifFile->Image.ColorMap) {
         GifFreeMapObject(GifFile->Image.ColorMap);
         GifFile->Image.ColorMap = NULL;
@@ -685,8 +788,6 @@ DGifCloseFile(GifFileType *GifFile, int *ErrorCode) {
 
     GifFreeExtensions(&GifFile->ExtensionBlockCount, &GifFile->ExtensionBlocks);
 
-    Private = (GifFilePrivateType *) GifFile->Private;
-
     if (!IS_READABLE(Private)) {
         /* This file was NOT open for reading: */
         if (ErrorCode != NULL)
@@ -711,6 +812,107 @@ DGifCloseFile(GifFileType *GifFile, int *ErrorCode) {
     return GIF_OK;
 }
 
+/******************************************************************************
+ Have everything DGifSlurp() saves from now on - images, their rasters, color
+ maps and extension blocks - allocated from Arena instead of one malloc each.
+ DGifCloseFile() leaves all of it to the owner of the arena, who frees it in
+ one go with GifArenaFree() after closing. Only possible before any image or
+ extension was read.
+******************************************************************************/
+int
+DGifSetArena(GifFileType *GifFile, GifArena *Arena) {
+    GifFilePrivateType *Private = (GifFilePrivateType *) GifFile->Private;
+
+    if (!IS_READABLE(Private)) {
+        /* This file was NOT open for reading: */
+        GifFile->Error = D_GIF_ERR_NOT_READABLE;
+        return GIF_ERROR;
+    }
+    if (GifFile->ImageCount != 0 || GifFile->SavedImages != NULL ||
+        GifFile->Image.ColorMap != NULL || GifFile->ExtensionBlockCount != 0) {
+        GifFile->Error = D_GIF_ERR_WRONG_RECORD;
+        return GIF_ERROR;
+    }
+    Private->Arena = Arena;
+    return GIF_OK;
+}
+
+/******************************************************************************
+ GifMakeMapObject(), from the arena if there is one.
+******************************************************************************/
+static ColorMapObject *
+DGifMakeMapObject(GifFileType *GifFile, int ColorCount) {
+    ColorMapObject *Object;
+    GifFilePrivateType *Private = (GifFilePrivateType *) GifFile->Private;
+
+    if (Private->Arena == NULL)
+        return GifMakeMapObject(ColorCount, NULL);
+
+    if (ColorCount != (1 << GifBitSize(ColorCount)))
+        return NULL;
+    Object = (ColorMapObject *) GifArenaAlloc(Private->Arena, sizeof(ColorMapObject));
+    if (Object == NULL)
+        return NULL;
+    Object->Colors = (GifColorType *) GifArenaAlloc(Private->Arena,
+                                                    ColorCount * sizeof(GifColorType));
+    if (Object->Colors == NULL)
+        return NULL;
+    memset(Object->Colors, 0, ColorCount * sizeof(GifColorType));
+    Object->ColorCount = ColorCount;
+    Object->BitsPerPixel = GifBitSize(ColorCount);
+    Object->SortFlag = false;
+    return Object;
+}
+
+/******************************************************************************
+ GifFreeMapObject(), nothing to do for a map from the arena.
+******************************************************************************/
+static void
+DGifFreeMapObject(GifFileType *GifFile, ColorMapObject *Object) {
+    GifFilePrivateType *Private = (GifFilePrivateType *) GifFile->Private;
+
+    if (Private->Arena == NULL)
+        GifFreeMapObject(Object);
+}
+
+/******************************************************************************
+ GifAddExtensionBlock() on the extensions of GifFile, from the arena if there
+ is one. The block array is grown by doubling there, when its count is a
+ power of two.
+******************************************************************************/
+static int
+DGifAddExtensionBlock(GifFileType *GifFile, int Function,
+                      unsigned int Len, unsigned char ExtData[]) {
+    ExtensionBlock *ep;
+    int Count = GifFile->ExtensionBlockCount;
+    GifFilePrivateType *Private = (GifFilePrivateType *) GifFile->Private;
+
+    if (Private->Arena == NULL)
+        return GifAddExtensionBlock(&GifFile->ExtensionBlockCount,
+                                    &GifFile->ExtensionBlocks,
+                                    Function, Len, ExtData);
+
+    if ((Count & (Count - 1)) == 0) {
+        ep = (ExtensionBlock *) GifArenaAlloc(Private->Arena,
+                                              (Count ? Count * 2 : 1) * sizeof(ExtensionBlock));
+        if (ep == NULL)
+            return GIF_ERROR;
+        if (Count)
+            memcpy(ep, GifFile->ExtensionBlocks, Count * sizeof(ExtensionBlock));
+        GifFile->ExtensionBlocks = ep;
+    }
+
+    ep = &GifFile->ExtensionBlocks[GifFile->ExtensionBlockCount++];
+    ep->Function = Function;
+    ep->ByteCount = Len;
+    ep->Bytes = (GifByteType *) GifArenaAlloc(Private->Arena, Len);
+    if (ep->Bytes == NULL)
+        return GIF_ERROR;
+    if (ExtData != NULL)
+        memcpy(ep->Bytes, ExtData, Len);
+    return GIF_OK;
+}
+
 /******************************************************************************
  Get 2 bytes (word) from the given file:
 ******************************************************************************/
@@ -955,6 +1157,170 @@ DGifDecompressLine(GifFileType *GifFile, GifPixelType *Line, int LineLen) {
     return GIF_OK;
 }
 
+/******************************************************************************
+ The fast path of DGifDecompressLine() used by DGifGetImage(), decoding a
+ whole image into one contiguous buffer:
+ - codes are taken from a 64 bit buffer topped up a word at a time from the
+   current data block, instead of a byte per call of DGifBufferedInput().
+ - the string of every code already sits in the output, so StrOffset and
+   StrLength locate it and it is copied over in one go, instead of tracing
+   Prefix/Suffix onto the Stack and popping it back.
+ Prefix/Suffix are kept up to date as well, so on the first code that needs
+ the defective image handling of DGifDecompressLine() (EOF code, undefined
+ codes, over long strings) the state is handed back with that code unread
+ and DGifDecompressLine() carries on, giving exactly the same pixels and
+ errors as before. lib-image-gif/tools/lzw-check/lzw_check.sh checks that
+ against an earlier revision after any change here.
+******************************************************************************/
+static int
+DGifDecompressImage(GifFileType *GifFile, GifPixelType *Pixels, int Len) {
+    int i = 0, j, n, Code, Start, Offset, StrLen, LastOffset = 0, LastLen = 0;
+    unsigned long long Word;
+    GifFilePrivateType *Private = (GifFilePrivateType *) GifFile->Private;
+    GifByteType *Buf = Private->Buf, *Suffix = Private->Suffix;
+    GifPrefixType *Prefix = Private->Prefix;
+    unsigned int *StrOffset = Private->StrOffset;
+    unsigned short *StrLength = Private->StrLength;
+    int ClearCode = Private->ClearCode, EOFCode = Private->EOFCode,
+            RunningCode = Private->RunningCode, RunningBits = Private->RunningBits,
+            MaxCode1 = Private->MaxCode1, LastCode = Private->LastCode;
+    unsigned long long BitBuf = Private->CrntShiftDWord;
+    int BitCount = Private->CrntShiftState, BufPos = Buf[1], BufLeft = Buf[0];
+
+    while (i < Len) {
+        if (BitCount < RunningBits) {
+            if (BufLeft == 0) {
+                /* Read the next data block, as DGifBufferedInput() does: */
+                /* coverity[check_return] */
+                if (InternalRead(GifFile, Buf, 1) != 1) {
+                    GifFile->Error = D_GIF_ERR_READ_FAILED;
+                    return GIF_ERROR;
+                }
+                if (Buf[0] == 0) {
+                    GifFile->Error = D_GIF_ERR_IMAGE_DEFECT;
+                    return GIF_ERROR;
+                }
+                if (InternalRead(GifFile, &Buf[1], Buf[0]) != Buf[0]) {
+                    GifFile->Error = D_GIF_ERR_READ_FAILED;
+                    return GIF_ERROR;
+                }
+                BitBuf |= (unsigned long long) Buf[1] << BitCount;
+                BitCount += 8;
+                BufPos = 2;
+                BufLeft = Buf[0] - 1;
+            }
+            /* Top up with as many whole bytes of this block as fit: */
+            n = (64 - BitCount) >> 3;
+            if (n > BufLeft)
+                n = BufLeft;
+            if (n == 8 || (n == 7 && BufLeft >= 8)) {
+                Word = (unsigned long long) Buf[BufPos] |
+                       (unsigned long long) Buf[BufPos + 1] << 8 |
+                       (unsigned long long) Buf[BufPos + 2] << 16 |
+                       (unsigned long long) Buf[BufPos + 3] << 24 |
+                       (unsigned long long) Buf[BufPos + 4] << 32 |
+                       (unsigned long long) Buf[BufPos + 5] << 40 |
+                       (unsigned long long) Buf[BufPos + 6] << 48 |
+                       (unsigned long long) Buf[BufPos + 7] << 56;
+                if (n == 7)
+                    Word &= 0x00ffffffffffffffULL;
+                BitBuf |= Word << BitCount;
+            } else {
+                for (j = 0; j < n; j++)
+                    BitBuf |= (unsigned long long) Buf[BufPos + j] << (BitCount + 8 * j);
+            }
+            BitCount += 8 * n;
+            BufPos += n;
+            BufLeft -= n;
+            if (BitCount < RunningBits)
+                continue;    /* This block is used up, read the next one. */
+        }
+        Code = (int) (BitBuf & ((1U << RunningBits) - 1));
+
+        if (Code == ClearCode) {
+            BitBuf >>= RunningBits;
+            BitCount -= RunningBits;
+            for (j = 0; j <= LZ_MAX_CODE; j++)
+                Prefix[j] = NO_SUCH_CODE;
+            RunningCode = EOFCode + 1;
+            RunningBits = Private->BitsPerPixel + 1;
+            MaxCode1 = 1 << RunningBits;
+            LastCode = NO_SUCH_CODE;
+            continue;
+        }
+
+        Start = i;
+        if (Code < ClearCode) {
+            StrLen = 1;
+            Pixels[i++] = (GifPixelType) Code;
+        } else {
+            if (Prefix[Code] != NO_SUCH_CODE) {
+                Offset = StrOffset[Code];
+                StrLen = StrLength[Code];
+            } else if (LastCode != NO_SUCH_CODE &&
+                       Code == (RunningCode < LZ_MAX_CODE + 2 ? RunningCode - 1 : RunningCode - 2)) {
+                /* The code being defined: last string plus its first char. */
+                Offset = LastOffset;
+                StrLen = LastLen + 1;
+            } else
+                break;
+            if (StrLen >= LZ_MAX_CODE)
+                break;
+
+            /* The end of a string not fitting the image is dropped, the
+             * image is complete then. */
+            n = Len - i < StrLen ? Len - i : StrLen;
+            if (Offset + n <= i) {
+                memcpy(Pixels + i, Pixels + Offset, n);
+            } else {
+                /* Overlaps itself, copy forward one pixel at a time: */
+                for (j = 0; j < n; j++)
+                    Pixels[i + j] = Pixels[Offset + j];
+            }
+            i += n;
+        }
+
+        BitBuf >>= RunningBits;
+        BitCount -= RunningBits;
+        if (RunningCode < LZ_MAX_CODE + 2 &&
+            ++RunningCode > MaxCode1 && RunningBits < LZ_BITS) {
+            MaxCode1 <<= 1;
+            RunningBits++;
+        }
+        if (LastCode != NO_SUCH_CODE && RunningCode - 2 < (LZ_MAX_CODE + 1) &&
+            Prefix[RunningCode - 2] == NO_SUCH_CODE) {
+            Prefix[RunningCode - 2] = LastCode;
+            Suffix[RunningCode - 2] = Pixels[Start];
+            StrOffset[RunningCode - 2] = LastOffset;
+            StrLength[RunningCode - 2] = LastLen + 1;
+        }
+        LastCode = Code;
+        LastOffset = Start;
+        LastLen = StrLen;
+    }
+
+    /* Hand the state back, returning whole unused bytes to the block but
+     * its first one, which DGifBufferedInput() has overwritten: */
+    n = BitCount >> 3;
+    if (n > BufPos - 2)
+        n = BufPos - 2;
+    if (n < 0)
+        n = 0;
+    BitCount -= 8 * n;
+    Buf[0] = BufLeft + n;
+    Buf[1] = BufPos - n;
+    Private->CrntShiftDWord = (unsigned long) (BitBuf & ((1ULL << BitCount) - 1));
+    Private->CrntShiftState = BitCount;
+    Private->RunningCode = RunningCode;
+    Private->RunningBits = RunningBits;
+    Private->MaxCode1 = MaxCode1;
+    Private->LastCode = LastCode;
+
+    if (i < Len)
+        return DGifDecompressLine(GifFile, Pixels + i, Len - i);
+    return GIF_OK;
+}
+
 /******************************************************************************
  Routine to trace the Prefixes linked list until we get a prefix which is
  not code, but a pixel value (less than ClearCode). Returns that pixel value.
@@ -1108,14 +1474,40 @@ DGifBufferedInput(GifFileType *GifFile, GifByteType *Buf, GifByteType *NextByte)
 *******************************************************************************/
 int
 DGifSlurp(GifFileType *GifFile) {
+    bool Done = false;
+
+    GifFile->ExtensionBlocks = NULL;
+    GifFile->ExtensionBlockCount = 0;
+
+    while (!Done) {
+        if (DGifSlurpNext(GifFile, &Done) == GIF_ERROR)
+            return (GIF_ERROR);
+    }
+
+    /* Sanity check for corrupted file */
+    if (GifFile->ImageCount == 0) {
+        GifFile->Error = D_GIF_ERR_NO_IMAG_DSCR;
+        return (GIF_ERROR);
+    }
+
+    return (GIF_OK);
+}
+
+/******************************************************************************
+ Incremental version of DGifSlurp(): reads records until one more image has
+ been saved into core, or the terminator has been reached, in which case
+ *Done is set.  Lets callers stop reading once they have the images they need.
+*******************************************************************************/
+int
+DGifSlurpNext(GifFileType *GifFile, bool *Done) {
     size_t ImageSize;
     GifRecordType RecordType;
     SavedImage *sp;
     GifByteType *ExtData;
     int ExtFunction;
+    GifFilePrivateType *Private = (GifFilePrivateType *) GifFile->Private;
 
-    GifFile->ExtensionBlocks = NULL;
-    GifFile->ExtensionBlockCount = 0;
+    *Done = false;
 
     do {
         if (DGifGetRecordType(GifFile, &RecordType) == GIF_ERROR)
@@ -1137,35 +1529,18 @@ DGifSlurp(GifFileType *GifFile) {
                 if (ImageSize > (SIZE_MAX / sizeof(GifPixelType))) {
                     return GIF_ERROR;
                 }
-                sp->RasterBits = (unsigned char *) reallocarray(NULL, ImageSize,
-                                                                sizeof(GifPixelType));
+                if (Private->Arena != NULL)
+                    sp->RasterBits = (unsigned char *) GifArenaAlloc(Private->Arena, ImageSize);
+                else
+                    sp->RasterBits = (unsigned char *) reallocarray(NULL, ImageSize,
+                                                                    sizeof(GifPixelType));
 
                 if (sp->RasterBits == NULL) {
                     return GIF_ERROR;
                 }
 
-                if (sp->ImageDesc.Interlace) {
-                    int i, j;
-                    /*
-                     * The way an interlaced image should be read -
-                     * offsets and jumps...
-                     */
-                    int InterlacedOffset[] = {0, 4, 2, 1};
-                    int InterlacedJumps[] = {8, 8, 4, 2};
-                    /* Need to perform 4 passes on the image */
-                    for (i = 0; i < 4; i++)
-                        for (j = InterlacedOffset[i];
-                             j < sp->ImageDesc.Height;
-                             j += InterlacedJumps[i]) {
-                            if (DGifGetLine(GifFile,
-                                            sp->RasterBits + j * sp->ImageDesc.Width,
-                                            sp->ImageDesc.Width) == GIF_ERROR)
-                                return GIF_ERROR;
-                        }
-                } else {
-                    if (DGifGetLine(GifFile, sp->RasterBits, ImageSize) == GIF_ERROR)
-                        return (GIF_ERROR);
-                }
+                if (DGifGetImage(GifFile, sp->RasterBits) == GIF_ERROR)
+                    return (GIF_ERROR);
 
                 if (GifFile->ExtensionBlocks) {
                     sp->ExtensionBlocks = GifFile->ExtensionBlocks;
@@ -1174,17 +1549,15 @@ DGifSlurp(GifFileType *GifFile) {
                     GifFile->ExtensionBlocks = NULL;
                     GifFile->ExtensionBlockCount = 0;
                 }
-                break;
+                return (GIF_OK);
 
             case EXTENSION_RECORD_TYPE:
                 if (DGifGetExtension(GifFile, &ExtFunction, &ExtData) == GIF_ERROR)
                     return (GIF_ERROR);
                 /* Create an extension block with our data */
                 if (ExtData != NULL) {
-                    if (GifAddExtensionBlock(&GifFile->ExtensionBlockCount,
-                                             &GifFile->ExtensionBlocks,
-                                             ExtFunction, ExtData[0], &ExtData[1])
-                        == GIF_ERROR)
+                    if (DGifAddExtensionBlock(GifFile, ExtFunction,
+                                              ExtData[0], &ExtData[1]) == GIF_ERROR)
                         return (GIF_ERROR);
                 }
                 for (;;) {
@@ -1194,15 +1567,14 @@ DGifSlurp(GifFileType *GifFile) {
                         break;
                     /* Continue the extension block */
                     if (ExtData != NULL)
-                        if (GifAddExtensionBlock(&GifFile->ExtensionBlockCount,
-                                                 &GifFile->ExtensionBlocks,
-                                                 CONTINUE_EXT_FUNC_CODE,
-                                                 ExtData[0], &ExtData[1]) == GIF_ERROR)
+                        if (DGifAddExtensionBlock(GifFile, CONTINUE_EXT_FUNC_CODE,
+                                                  ExtData[0], &ExtData[1]) == GIF_ERROR)
                             return (GIF_ERROR);
                 }
                 break;
 
             case TERMINATE_RECORD_TYPE:
+                *Done = true;
                 break;
 
             default:    /* Should be trapped by DGifGetRecordType */
@@ -1210,12 +1582,6 @@ DGifSlurp(GifFileType *GifFile) {
         }
     } while (RecordType != TERMINATE_RECORD_TYPE);
 
-    /* Sanity check for corrupted file */
-    if (GifFile->ImageCount == 0) {
-        GifFile->Error = D_GIF_ERR_NO_IMAG_DSCR;
-        return (GIF_ERROR);
-    }
-
     return (GIF_OK);
 }
 
@@ -104,6 +104,9 @@ typedef int (*InputFunc)(GifFileType *, GifByteType *, int);
  */
 typedef int (*OutputFunc)(GifFileType *, const GifByteType *, int);
 
+/* arena the saved images of a decoder can be allocated from (gif_alloc.c) */
+typedef struct GifArena GifArena;
+
 /******************************************************************************
  GIF89 structures
 ******************************************************************************/
@@ -199,9 +202,13 @@ GifFileType *DGifOpenFileHandle(int GifFileHandle, int *Error);
 
 int DGifSlurp(GifFileType *GifFile);
 
+int DGifSlurpNext(GifFileType *GifFile, bool *Done);    /* reads records until one more image is saved */
+
 GifFileType *DGifOpen(void *userPtr, InputFunc readFunc, int *Error);    /* new one (TVT) */
 int DGifCloseFile(GifFileType *GifFile, int *ErrorCode);
 
+int DGifSetArena(GifFileType *GifFile, GifArena *Arena);    /* allocate saved images from Arena */
+
 #define D_GIF_SUCCEEDED          0
 #define D_GIF_ERR_OPEN_FAILED    101    /* And DGif possible errors. */
 #define D_GIF_ERR_READ_FAILED    102
@@ -230,6 +237,8 @@ int DGifGetLine(GifFileType *GifFile, GifPixelType *GifLine, int GifLineLen);
 
 int DGifGetPixel(GifFileType *GifFile, GifPixelType GifPixel);
 
+int DGifGetImage(GifFileType *GifFile, GifPixelType *Raster);   /* whole image in one call */
+
 int DGifGetExtension(GifFileType *GifFile, int *GifExtCode,
                      GifByteType **GifExtension);
 
@@ -289,6 +298,21 @@ extern SavedImage *GifMakeSavedImage(GifFileType *GifFile,
 
 extern void GifFreeSavedImages(GifFileType *GifFile);
 
+/******************************************************************************
+ Arena allocation from gif_alloc.c, lets a decoder own everything DGifSlurp()
+ saves as a few big chunks released in one go (see DGifSetArena).
+******************************************************************************/
+
+extern GifArena *GifArenaCreate(size_t InitialSize);
+
+extern void *GifArenaAlloc(GifArena *Arena, size_t Size);
+
+extern int GifArenaFreeLast(GifArena *Arena, void *Ptr, size_t Size);
+
+extern size_t GifArenaSize(const GifArena *Arena);
+
+extern void GifArenaFree(GifArena *Arena);
+
 /******************************************************************************
  5.x functions for GIF89 graphics control blocks
 ******************************************************************************/
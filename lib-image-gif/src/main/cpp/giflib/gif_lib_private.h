@@ -56,7 +56,10 @@ typedef struct GifFilePrivateType {
     GifByteType Stack[LZ_MAX_CODE]; /* Decoded pixels are stacked here. */
     GifByteType Suffix[LZ_MAX_CODE + 1];    /* So we can trace the codes. */
     GifPrefixType Prefix[LZ_MAX_CODE + 1];
+    unsigned int StrOffset[LZ_MAX_CODE + 1];    /* Where each code's string was output (DGifGetImage). */
+    unsigned short StrLength[LZ_MAX_CODE + 1];  /* Length of each code's string (DGifGetImage). */
     GifHashTableType *HashTable;
+    GifArena *Arena;    /* Saved images are allocated from here, if set. */
     bool gif89;
 } GifFilePrivateType;
 
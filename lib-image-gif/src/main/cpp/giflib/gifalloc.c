@@ -7,6 +7,7 @@ SPDX-License-Identifier: MIT
 ****************************************************************************/
 
 #include <stdlib.h>
+#include <stdint.h>
 #include <stdio.h>
 #include <string.h>
 
@@ -14,6 +15,7 @@ SPDX-License-Identifier: MIT
 #include "gif_lib_private.h"
 
 #define MAX(x, y)    (((x) > (y)) ? (x) : (y))
+#define MIN(x, y)    (((x) < (y)) ? (x) : (y))
 
 /******************************************************************************
  Miscellaneous utility functions                          
@@ -407,4 +409,143 @@ GifFreeSavedImages(GifFileType *GifFile) {
     GifFile->SavedImages = NULL;
 }
 
+/******************************************************************************
+ Arena allocation: memory is bumped out of a few big chunks and released all
+ at once by GifArenaFree(). Only the latest allocation can be given back
+ earlier, by GifArenaFreeLast().
+******************************************************************************/
+
+#define GIF_ARENA_ALIGN         8
+#define GIF_ARENA_MIN_CHUNK     (16 * 1024)
+#define GIF_ARENA_MAX_GROWTH    (8 * 1024 * 1024)
+#define GIF_ARENA_ROUND(n)      (((n) + GIF_ARENA_ALIGN - 1) & ~((size_t) GIF_ARENA_ALIGN - 1))
+
+typedef struct GifArenaChunk {
+    struct GifArenaChunk *Next;
+    size_t Size, Used;
+} GifArenaChunk;
+
+#define GIF_ARENA_HEADER        GIF_ARENA_ROUND(sizeof(GifArenaChunk))
+
+struct GifArena {
+    GifArenaChunk *Chunks;    /* The first one is allocated from. */
+    size_t NextSize;    /* Size of the next chunk. */
+    size_t Reserved;    /* Bytes taken from the heap so far. */
+};
+
+static GifArenaChunk *
+GifArenaNewChunk(GifArena *Arena, size_t Size) {
+    GifArenaChunk *Chunk;
+
+    if (Size > SIZE_MAX - GIF_ARENA_HEADER)
+        return NULL;
+    Chunk = (GifArenaChunk *) malloc(GIF_ARENA_HEADER + Size);
+    if (Chunk == NULL)
+        return NULL;
+    Chunk->Next = NULL;
+    Chunk->Size = Size;
+    Chunk->Used = 0;
+    Arena->Reserved += GIF_ARENA_HEADER + Size;
+    return Chunk;
+}
+
+/*
+ * Create an arena whose first chunk holds InitialSize bytes. Later chunks
+ * start at a quarter of it and double in size up to GIF_ARENA_MAX_GROWTH.
+ */
+GifArena *
+GifArenaCreate(size_t InitialSize) {
+    GifArena *Arena = (GifArena *) malloc(sizeof(GifArena));
+
+    if (Arena == NULL)
+        return NULL;
+    Arena->Reserved = 0;
+    InitialSize = MAX(GIF_ARENA_ROUND(InitialSize), GIF_ARENA_MIN_CHUNK);
+    Arena->NextSize = MIN(MAX(GIF_ARENA_ROUND(InitialSize / 4), GIF_ARENA_MIN_CHUNK),
+                          GIF_ARENA_MAX_GROWTH);
+    Arena->Chunks = GifArenaNewChunk(Arena, InitialSize);
+    if (Arena->Chunks == NULL) {
+        free(Arena);
+        return NULL;
+    }
+    return Arena;
+}
+
+/*
+ * Allocate Size bytes, aligned to GIF_ARENA_ALIGN and not cleared.
+ */
+void *
+GifArenaAlloc(GifArena *Arena, size_t Size) {
+    GifArenaChunk *Chunk = Arena->Chunks, *NewChunk;
+    void *Ptr;
+
+    if (Size > SIZE_MAX - GIF_ARENA_ALIGN)
+        return NULL;
+    Size = GIF_ARENA_ROUND(Size);
+    if (Chunk->Size - Chunk->Used < Size) {
+        NewChunk = GifArenaNewChunk(Arena, MAX(Arena->NextSize, Size));
+        if (NewChunk == NULL)
+            return NULL;
+        if (NewChunk->Size - Size < Chunk->Size - Chunk->Used) {
+            /* Oversized, keep allocating from the roomier current chunk. */
+            NewChunk->Next = Chunk->Next;
+            Chunk->Next = NewChunk;
+            Chunk = NewChunk;
+        } else {
+            NewChunk->Next = Chunk;
+            Arena->Chunks = Chunk = NewChunk;
+        }
+        Arena->NextSize = MIN(Arena->NextSize * 2, GIF_ARENA_MAX_GROWTH);
+    }
+    Ptr = (char *) Chunk + GIF_ARENA_HEADER + Chunk->Used;
+    Chunk->Used += Size;
+    return Ptr;
+}
+
+/*
+ * Give back Ptr, Size bytes from GifArenaAlloc(), if nothing was allocated
+ * after it from its chunk. Returns whether the memory could be reused.
+ */
+int
+GifArenaFreeLast(GifArena *Arena, void *Ptr, size_t Size) {
+    GifArenaChunk *Chunk = Arena->Chunks, *Oversized = Chunk->Next;
+
+    Size = GIF_ARENA_ROUND(Size);
+    if (Chunk->Used >= Size &&
+        (char *) Chunk + GIF_ARENA_HEADER + Chunk->Used - Size == (char *) Ptr) {
+        Chunk->Used -= Size;
+        return 1;
+    }
+    /* An oversized allocation got a chunk of its own behind the first one. */
+    if (Oversized != NULL && Oversized->Used == Size &&
+        (char *) Oversized + GIF_ARENA_HEADER == (char *) Ptr) {
+        Chunk->Next = Oversized->Next;
+        Arena->Reserved -= GIF_ARENA_HEADER + Oversized->Size;
+        free(Oversized);
+        return 1;
+    }
+    return 0;
+}
+
+/*
+ * Bytes the arena has taken from the heap.
+ */
+size_t
+GifArenaSize(const GifArena *Arena) {
+    return Arena == NULL ? 0 : Arena->Reserved;
+}
+
+void
+GifArenaFree(GifArena *Arena) {
+    GifArenaChunk *Chunk, *Next;
+
+    if (Arena == NULL)
+        return;
+    for (Chunk = Arena->Chunks; Chunk != NULL; Chunk = Next) {
+        Next = Chunk->Next;
+        free(Chunk);
+    }
+    free(Arena);
+}
+
 /* end */
@@ -1,6 +1,7 @@
 #include <jni.h>
 #include "utils/log.h"
 #include "GifDecoder.h"
+#include "GifOptimizer.h"
 #include "stream/Stream.h"
 
 ////////////////////////////////////////////////////////////////////////////////
@@ -20,5 +21,9 @@ jint JNI_OnLoad(JavaVM *vm, void *reserved) {
         ALOGE("Failed to load GifDecoder");
         return -1;
     }
+    if (GifOptimizer_OnLoad(env)) {
+        ALOGE("Failed to load GifOptimizer");
+        return -1;
+    }
     return JNI_VERSION_1_6;
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ import android.graphics.Bitmap;
 import android.graphics.BitmapShader;
 import android.graphics.Canvas;
 import android.graphics.ColorFilter;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PixelFormat;
 import android.graphics.Rect;
@@ -34,6 +35,7 @@ import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 /**
  * Thanks for Google
@@ -59,9 +61,9 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
      * <p>
      * Note that 0 delay is undefined behavior in the GIF standard.
      */
-    private static final long MIN_DELAY_MS = 20;
-    private static final long DEFAULT_DELAY_MS = 100;
-    private static final BitmapProvider DEFAULT_BITMAP_PROVIDER = new BitmapProvider() {
+    static final long MIN_DELAY_MS = 20;
+    static final long DEFAULT_DELAY_MS = 100;
+    static final BitmapProvider DEFAULT_BITMAP_PROVIDER = new BitmapProvider() {
         @Override
         public Bitmap acquireBitmap(int minWidth, int minHeight) {
             return Bitmap.createBitmap(minWidth, minHeight, Bitmap.Config.ARGB_8888);
@@ -95,6 +97,66 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
     @Deprecated
     public static final int LOOP_ONCE = LOOP_FINITE;
 
+    /**
+     * No frame rate cap, every frame is shown.
+     */
+    public static final int FRAME_RATE_UNLIMITED = 0;
+
+    /**
+     * Use the global frame rate cap, which can be set using setDefaultMaxFrameRate.
+     */
+    public static final int FRAME_RATE_DEFAULT = -1;
+
+    /**
+     * A frame rate cap suitable for feed thumbnails, backgrounds, or the system's battery saver mode.
+     */
+    public static final int FRAME_RATE_BATTERY_SAVER = 10;
+
+    private static volatile int sDefaultMaxFrameRate = FRAME_RATE_UNLIMITED;
+
+    /**
+     * Quality levels of the adaptive quality, from the constructor's inSampleSize down to 4 times the inSampleSize.
+     */
+    public static final int QUALITY_LEVEL_FULL = 0;
+    public static final int QUALITY_LEVEL_LOWEST = 2;
+
+    /**
+     * Per quality level, the inSampleSize is shifted left by QUALITY_SAMPLE_SHIFTS. Only the resolution is lowered,
+     * a lower frame rate merges frames but they are still composed, so it would not reduce the decode time.
+     */
+    private static final int[] QUALITY_SAMPLE_SHIFTS = {0, 1, 2};
+
+    /**
+     * How much the load grows when stepping up a quality level: twice the width and height to compose.
+     */
+    private static final float QUALITY_STEP_UP_COST = 4f;
+
+    /**
+     * Decode time over frame delay above which a frame counts as overloaded, and the same ratio, projected onto the
+     * level above, below which it counts as having headroom. The gap between them and the frame counts needed to
+     * change level keep the quality from flapping.
+     */
+    private static final float QUALITY_STEP_DOWN_LOAD = 0.8f;
+    private static final float QUALITY_STEP_UP_LOAD = 0.6f;
+    private static final int QUALITY_STEP_DOWN_FRAMES = 8;
+    private static final int QUALITY_STEP_UP_FRAMES = 60;
+
+    /**
+     * Set the frame rate cap of every drawable that uses FRAME_RATE_DEFAULT, takes effect from their next frame.
+     *
+     * @param maxFrameRate frames per second, or FRAME_RATE_UNLIMITED.
+     */
+    public static void setDefaultMaxFrameRate(int maxFrameRate) {
+        if (maxFrameRate < 0) {
+            throw new IllegalArgumentException("invalid frame rate " + maxFrameRate);
+        }
+        sDefaultMaxFrameRate = maxFrameRate;
+    }
+
+    public static int getDefaultMaxFrameRate() {
+        return sDefaultMaxFrameRate;
+    }
+
     // Status.
     private static final int STATE_SCHEDULED = 1;
     private static final int STATE_DECODING = 2;
@@ -114,6 +176,39 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
         sDecodingThreadHandler = new Handler(sDecodingThread.getLooper());
     }
 
+    /**
+     * Get the region of a gif which stays visible when it is center cropped into the aspect ratio of dstWidth x
+     * dstHeight, such as a center crop ImageView, or (1, 1) for the circle mask.
+     *
+     * @return the region in gif pixels, can be passed to the constructor so the rest is never composed.
+     */
+    public static Rect getCenterCropRect(int width, int height, int dstWidth, int dstHeight) {
+        if (dstWidth <= 0 || dstHeight <= 0) {
+            throw new IllegalArgumentException("invalid dst size " + dstWidth + "x" + dstHeight);
+        }
+        if ((long) width * dstHeight > (long) height * dstWidth) {
+            // wider than dst, crop left and right
+            final int cropWidth = (int) ((long) height * dstWidth / dstHeight);
+            final int left = (width - cropWidth) / 2;
+            return new Rect(left, 0, left + cropWidth, height);
+        } else {
+            final int cropHeight = (int) ((long) width * dstHeight / dstWidth);
+            final int top = (height - cropHeight) / 2;
+            return new Rect(0, top, width, top + cropHeight);
+        }
+    }
+
+    /**
+     * The bitmap is sampleSize times smaller than the intrinsic size the circle mask is drawn in.
+     */
+    private static BitmapShader createBitmapShader(Bitmap bitmap, int sampleSize) {
+        BitmapShader shader = new BitmapShader(bitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        Matrix matrix = new Matrix();
+        matrix.setScale(sampleSize, sampleSize);
+        shader.setLocalMatrix(matrix);
+        return shader;
+    }
+
     private static Bitmap acquireAndValidateBitmap(BitmapProvider bitmapProvider,
                                                    int minWidth, int minHeight) {
         Bitmap bitmap = bitmapProvider.acquireBitmap(minWidth, minHeight);
@@ -130,12 +225,18 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
     // ///////////////////////////////////////////////  Object define //////////////////////////////////////////////////////
 
     private final GifDecoder mDecoder;
+    // own composing state, so drawables sharing a decoder don't block each other
+    private final RenderContext mRenderContext;
     private final int mInSampleSize;
+    private final Rect mCropRect;
+    private final FrameTimeline mTimeline;
 
     private final Paint mPaint;
     private BitmapShader mFrontBitmapShader;
     private BitmapShader mBackBitmapShader;
-    private final Rect mSrcRect;
+    private int mFrontSampleSize;
+    private int mBackSampleSize;
+    private final Rect mSrcRect = new Rect();
     private boolean mCircleMaskEnabled;
 
     //Protects the fields below
@@ -154,8 +255,24 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
     private long mLastSwap;
     private long mNextSwap;
     private int mNextFrameToDecode;
+    private int mFrontFrameNr;
+    private int mBackFrameNr;
     private OnFinishedListener mOnFinishedListener;
 
+    private int mMaxFrameRate = FRAME_RATE_DEFAULT;
+    private boolean mWallClockSyncEnabled;
+    private long mLoopStartTime;
+    private long mFrontPosition;
+    private long mNextPosition;
+    private long mNextFrameDelay;
+    private long mNextFrameDueTime;
+    private long mDecodeTimeMs;
+
+    private boolean mAdaptiveQualityEnabled = true;
+    private int mQualityLevel = QUALITY_LEVEL_FULL;
+    private int mOverloadedFrames;
+    private int mUnderloadedFrames;
+
     private final RectF mTempRectF = new RectF();
 
     /**
@@ -165,7 +282,10 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
         @Override
         public void run() {
             int nextFrame;
+            int lastFrame;
             Bitmap bitmap;
+            int sampleSize;
+            boolean resize;
             synchronized (mLock) {
                 if (mDestroyed) {
                     return;
@@ -175,32 +295,56 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
                     return;
                 }
                 bitmap = mBackBitmap;
+                lastFrame = mBackFrameNr;
+                sampleSize = getSampleSizeLocked();
+                resize = mBackSampleSize != sampleSize;
                 mState = STATE_DECODING;
             }
-            int lastFrame = nextFrame - 2;
+            if (resize) {
+                // quality level changed, the back bitmap is only touched by this thread while decoding
+                Bitmap resized = acquireAndValidateBitmap(mBitmapProvider,
+                        mCropRect.width() / sampleSize, mCropRect.height() / sampleSize);
+                synchronized (mLock) {
+                    mBackBitmap = resized;
+                    mBackBitmapShader = createBitmapShader(resized, sampleSize);
+                    mBackSampleSize = sampleSize;
+                    mBackFrameNr = -1;
+                }
+                mBitmapProvider.releaseBitmap(bitmap);
+                bitmap = resized;
+                lastFrame = -1;
+            }
             boolean exceptionDuringDecode = false;
-            long invalidateTimeMs = 0;
+            long decodeStartTime = SystemClock.uptimeMillis();
             try {
-                invalidateTimeMs = mDecoder.getFrame(nextFrame, bitmap, lastFrame, mInSampleSize);
+                mRenderContext.getFrame(nextFrame, bitmap, lastFrame, sampleSize, mCropRect);
             } catch (Exception e) {
                 // Exception during decode: continue, but delay next frame indefinitely.
                 Log.e(TAG, "exception during decode: " + e);
                 exceptionDuringDecode = true;
             }
 
-            if (invalidateTimeMs < MIN_DELAY_MS) {
-                invalidateTimeMs = DEFAULT_DELAY_MS;
-            }
-
             boolean schedule = false;
             Bitmap bitmapToRelease = null;
             synchronized (mLock) {
+                mBackFrameNr = exceptionDuringDecode ? -1 : nextFrame;
+                // smooth the decode cost, used to aim at the frame due when decoding finishes
+                mDecodeTimeMs = (mDecodeTimeMs * 3 + SystemClock.uptimeMillis() - decodeStartTime) / 4;
                 if (mDestroyed) {
                     bitmapToRelease = mBackBitmap;
                     mBackBitmap = null;
                 } else if (mNextFrameToDecode >= 0 && mState == STATE_DECODING) {
+                    if (!exceptionDuringDecode) {
+                        updateQualityLocked();
+                    }
                     schedule = true;
-                    mNextSwap = exceptionDuringDecode ? Long.MAX_VALUE : invalidateTimeMs + mLastSwap;
+                    if (exceptionDuringDecode) {
+                        mNextSwap = Long.MAX_VALUE;
+                    } else if (mWallClockSyncEnabled) {
+                        mNextSwap = mNextFrameDueTime;
+                    } else {
+                        mNextSwap = mNextFrameDelay + mLastSwap;
+                    }
                     mState = STATE_WAITING_TO_SWAP;
                 }
             }
@@ -211,6 +355,7 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
                 // destroy the bitmap here, since there's no safe way to get back to
                 // drawable thread - drawable is likely detached, so schedule is noop.
                 mBitmapProvider.releaseBitmap(bitmapToRelease);
+                mRenderContext.release();
             }
         }
     };
@@ -233,29 +378,50 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
     }
 
     public FrameSequenceDrawable(GifDecoder decoder, BitmapProvider bitmapProvider, int inSampleSize) {
+        this(decoder, bitmapProvider, inSampleSize, null);
+    }
+
+    /**
+     * The drawable draws through its own {@link RenderContext} and never destroys the decoder, so one decoder can
+     * back several drawables. The context keeps the parsed gif alive until the drawable is destroyed or collected,
+     * the caller still owns the decoder and destroys it once no new drawable or context will be created from it.
+     *
+     * @param crop the region of the gif to show, null means the whole gif. Pixels outside of it are never
+     *             composed, and the frame bitmaps are only as large as it.
+     * @see #getCenterCropRect(int, int, int, int)
+     */
+    public FrameSequenceDrawable(GifDecoder decoder, BitmapProvider bitmapProvider, int inSampleSize,
+                                 @Nullable Rect crop) {
         if (decoder == null || bitmapProvider == null) {
             throw new IllegalArgumentException();
         }
         mDecoder = decoder;
+        mRenderContext = decoder.createRenderContext();
         mInSampleSize = inSampleSize;
+        mCropRect = new Rect(0, 0, decoder.getWidth(), decoder.getHeight());
+        if (crop != null && !mCropRect.intersect(crop)) {
+            throw new IllegalArgumentException("crop " + crop + " is outside of the gif");
+        }
+        mTimeline = FrameTimeline.forPlayback(decoder.getFrameDelays());
         mBitmapProvider = bitmapProvider;
-        final int width = decoder.getWidth() / inSampleSize;
-        final int height = decoder.getHeight() / inSampleSize;
+        final int width = mCropRect.width() / inSampleSize;
+        final int height = mCropRect.height() / inSampleSize;
         mFrontBitmap = acquireAndValidateBitmap(bitmapProvider, width, height);
         mBackBitmap = acquireAndValidateBitmap(bitmapProvider, width, height);
-        mSrcRect = new Rect(0, 0, width, height);
+        mFrontSampleSize = inSampleSize;
+        mBackSampleSize = inSampleSize;
         mPaint = new Paint();
         mPaint.setFilterBitmap(true);
 
-        mFrontBitmapShader
-                = new BitmapShader(mFrontBitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
-        mBackBitmapShader
-                = new BitmapShader(mBackBitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        mFrontBitmapShader = createBitmapShader(mFrontBitmap, inSampleSize);
+        mBackBitmapShader = createBitmapShader(mBackBitmap, inSampleSize);
 
         mLastSwap = 0;
 
         mNextFrameToDecode = -1;
-        mDecoder.getFrame(0, mFrontBitmap, -1, mInSampleSize);
+        mRenderContext.getFrame(0, mFrontBitmap, -1, mInSampleSize, mCropRect);
+        mFrontFrameNr = 0;
+        mBackFrameNr = -1;
         initializeDecodingThread();
     }
 
@@ -285,6 +451,141 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
     }
 
 
+    /**
+     * Cap the frame rate of this drawable.
+     *
+     * <p> Frames whose display window falls entirely between two ticks are merged into the next
+     * shown frame, so they cause no wakeup, buffer swap or upload of their own. They are still
+     * composed onto the canvas of the shown frame, unless they are cleared by their disposal or
+     * completely covered by an opaque frame before it, so for typical delta encoded gifs the cap
+     * saves wakeups and swaps rather than compose time.
+     *
+     * @param maxFrameRate frames per second, FRAME_RATE_UNLIMITED, or FRAME_RATE_DEFAULT to follow
+     *                     setDefaultMaxFrameRate.
+     */
+    public void setMaxFrameRate(int maxFrameRate) {
+        if (maxFrameRate < FRAME_RATE_DEFAULT) {
+            throw new IllegalArgumentException("invalid frame rate " + maxFrameRate);
+        }
+        synchronized (mLock) {
+            mMaxFrameRate = maxFrameRate;
+        }
+    }
+
+    /**
+     * Get the frame rate cap in effect, FRAME_RATE_UNLIMITED if there is none.
+     */
+    public int getMaxFrameRate() {
+        synchronized (mLock) {
+            return getMaxFrameRateLocked();
+        }
+    }
+
+    private int getMaxFrameRateLocked() {
+        return mMaxFrameRate == FRAME_RATE_DEFAULT ? sDefaultMaxFrameRate : mMaxFrameRate;
+    }
+
+    /**
+     * Pass false to always decode at the constructor's inSampleSize and the frame rate cap set.
+     *
+     * <p> When enabled, which is the default, the drawable compares the decode time with the frame
+     * delay. If decoding keeps falling behind, it steps down one quality level at a time by raising
+     * the inSampleSize, which reallocates smaller bitmaps from the BitmapProvider. It steps back up
+     * once there is enough headroom for the level above.
+     */
+    public void setAdaptiveQualityEnabled(boolean adaptiveQualityEnabled) {
+        synchronized (mLock) {
+            mAdaptiveQualityEnabled = adaptiveQualityEnabled;
+            if (!adaptiveQualityEnabled) {
+                setQualityLevelLocked(QUALITY_LEVEL_FULL);
+            }
+        }
+    }
+
+    public boolean isAdaptiveQualityEnabled() {
+        synchronized (mLock) {
+            return mAdaptiveQualityEnabled;
+        }
+    }
+
+    /**
+     * Get the current quality level, from QUALITY_LEVEL_FULL to QUALITY_LEVEL_LOWEST.
+     */
+    public int getQualityLevel() {
+        synchronized (mLock) {
+            return mQualityLevel;
+        }
+    }
+
+    /**
+     * Get the inSampleSize frames are decoded at, in the current quality level.
+     */
+    public int getInSampleSize() {
+        synchronized (mLock) {
+            return getSampleSizeLocked();
+        }
+    }
+
+    private int getSampleSizeLocked() {
+        return mInSampleSize << QUALITY_SAMPLE_SHIFTS[mQualityLevel];
+    }
+
+    private void setQualityLevelLocked(int qualityLevel) {
+        mQualityLevel = qualityLevel;
+        mOverloadedFrames = 0;
+        mUnderloadedFrames = 0;
+    }
+
+    /**
+     * Called after each decode, steps the quality level down when decoding keeps falling behind, and back up
+     * when the level above would still have headroom.
+     */
+    private void updateQualityLocked() {
+        if (!mAdaptiveQualityEnabled || mNextFrameDelay <= 0) {
+            return;
+        }
+        final float load = (float) mDecodeTimeMs / mNextFrameDelay;
+        if (load > QUALITY_STEP_DOWN_LOAD) {
+            mUnderloadedFrames = 0;
+            if (++mOverloadedFrames >= QUALITY_STEP_DOWN_FRAMES && mQualityLevel < QUALITY_LEVEL_LOWEST
+                    && mCropRect.width() >> QUALITY_SAMPLE_SHIFTS[mQualityLevel + 1] >= mInSampleSize
+                    && mCropRect.height() >> QUALITY_SAMPLE_SHIFTS[mQualityLevel + 1] >= mInSampleSize) {
+                setQualityLevelLocked(mQualityLevel + 1);
+            }
+        } else if (mQualityLevel > QUALITY_LEVEL_FULL && load * QUALITY_STEP_UP_COST < QUALITY_STEP_UP_LOAD) {
+            mOverloadedFrames = 0;
+            if (++mUnderloadedFrames >= QUALITY_STEP_UP_FRAMES) {
+                setQualityLevelLocked(mQualityLevel - 1);
+            }
+        } else {
+            mOverloadedFrames = 0;
+            mUnderloadedFrames = 0;
+        }
+    }
+
+    /**
+     * Pass true to keep the animation in sync with the wall clock.
+     *
+     * <p> When decoding falls behind, the frames that are already late are skipped and the frame
+     * that should be on screen is decoded directly, instead of slowing the whole animation down.
+     * Frames are never skipped across the end of a loop, so loop counting is unaffected.
+     */
+    public void setWallClockSyncEnabled(boolean wallClockSyncEnabled) {
+        synchronized (mLock) {
+            if (wallClockSyncEnabled && !mWallClockSyncEnabled) {
+                // align the timeline with the frame currently on screen
+                mLoopStartTime = mLastSwap - mFrontPosition;
+            }
+            mWallClockSyncEnabled = wallClockSyncEnabled;
+        }
+    }
+
+    public boolean isWallClockSyncEnabled() {
+        synchronized (mLock) {
+            return mWallClockSyncEnabled;
+        }
+    }
+
     /**
      * Pass true to mask the shape of the animated drawing content to a circle.
      *
@@ -347,6 +648,8 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
         mBitmapProvider.releaseBitmap(bitmapToReleaseA);
         if (bitmapToReleaseB != null) {
             mBitmapProvider.releaseBitmap(bitmapToReleaseB);
+            // not decoding, otherwise the decoding thread releases it when done
+            mRenderContext.release();
         }
     }
 
@@ -375,6 +678,15 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
                 mBackBitmapShader = mFrontBitmapShader;
                 mFrontBitmapShader = tmpShader;
 
+                int tmpSampleSize = mBackSampleSize;
+                mBackSampleSize = mFrontSampleSize;
+                mFrontSampleSize = tmpSampleSize;
+
+                int tmpFrameNr = mBackFrameNr;
+                mBackFrameNr = mFrontFrameNr;
+                mFrontFrameNr = tmpFrameNr;
+                mFrontPosition = mNextPosition;
+
                 mLastSwap = SystemClock.uptimeMillis();
 
                 boolean continueLooping = true;
@@ -422,6 +734,7 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
             canvas.restore();
         } else {
             mPaint.setShader(null);
+            mSrcRect.set(0, 0, mCropRect.width() / mFrontSampleSize, mCropRect.height() / mFrontSampleSize);
             canvas.drawBitmap(mFrontBitmap, mSrcRect, getBounds(), mPaint);
         }
     }
@@ -468,12 +781,12 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
 
     @Override
     public int getIntrinsicWidth() {
-        return mDecoder.getWidth();
+        return mCropRect.width();
     }
 
     @Override
     public int getIntrinsicHeight() {
-        return mDecoder.getHeight();
+        return mCropRect.height();
     }
 
     @Override
@@ -483,10 +796,57 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
 
     private void scheduleDecodeLocked() {
         mState = STATE_SCHEDULED;
-        mNextFrameToDecode = (mNextFrameToDecode + 1) % mDecoder.getFrameCount();
+        mNextFrameToDecode = computeNextFrameLocked();
         sDecodingThreadHandler.post(mDecodeRunnable);
     }
 
+    /**
+     * Pick the next frame to show, and record it's position on the timeline and when it's due.
+     * <p>
+     * Frames whose display window falls between two ticks of the frame rate cap, or which are already
+     * late in wall clock sync mode, are merged into the next shown frame and never shown on their own.
+     * The decoder still composes them while drawing the shown frame, except those cleared or completely
+     * covered before it.
+     */
+    private int computeNextFrameLocked() {
+        final int currentFrame = mNextFrameToDecode;
+        final long duration = mTimeline.getDuration();
+        final boolean newLoop = currentFrame < 0 || currentFrame == mTimeline.getFrameCount() - 1;
+        final int minFrame = newLoop ? 0 : currentFrame + 1;
+        // position of the frame on screen, relative to the loop of the next frame
+        final long currentPosition = newLoop ? mFrontPosition - duration : mFrontPosition;
+
+        long position = mTimeline.getTimestamp(minFrame);
+        if (currentFrame >= 0) {
+            final int maxFrameRate = getMaxFrameRateLocked();
+            if (maxFrameRate > 0) {
+                position = Math.max(position, currentPosition + 1000 / maxFrameRate);
+            }
+        }
+        if (mWallClockSyncEnabled) {
+            final long now = SystemClock.uptimeMillis();
+            if (currentFrame < 0) {
+                // (re)started, play from the first frame
+                mLoopStartTime = now + mDecodeTimeMs;
+            } else if (newLoop) {
+                // give up catching up if we are behind more than a whole loop
+                mLoopStartTime += duration;
+                if (now - mLoopStartTime >= duration) {
+                    mLoopStartTime = now;
+                }
+            }
+            // aim at the frame due when the decoding finishes
+            position = Math.max(position, now + mDecodeTimeMs - mLoopStartTime);
+        }
+
+        // getFrameIndex never goes past the last frame, so the end of a loop is never skipped over
+        final int frame = Math.max(minFrame, mTimeline.getFrameIndex(position));
+        mNextPosition = position;
+        mNextFrameDelay = currentFrame < 0 ? 0 : position - currentPosition;
+        mNextFrameDueTime = mLoopStartTime + position;
+        return frame;
+    }
+
     // ///////////////////////////////////////////////  Runnable impl //////////////////////////////////////////////////////
 
     @Override
@@ -540,7 +900,8 @@ public class FrameSequenceDrawable extends Drawable implements Animatable, Runna
     @Override
     protected void finalize() throws Throwable {
         try {
-            mDecoder.destroy();
+            // the decoder may be shared with other drawables, only release our own context
+            mRenderContext.release();
         } finally {
             super.finalize();
         }
@@ -0,0 +1,88 @@
+package com.sharry.lib.gif;
+
+/**
+ * Gif 帧的时间轴
+ * <p>
+ * 记录每一帧的展示时长与起始时间戳, 并提供时间到帧的二分查找.
+ *
+ * @author Sharry <a href="xiaoyu.zhu@1hai.cn">Contact me.</a>
+ * @version 1.0
+ * @since 2026-10-18
+ */
+final class FrameTimeline {
+
+    /**
+     * Create a timeline as it is played, short delays are replaced like browsers do.
+     *
+     * @see FrameSequenceDrawable#MIN_DELAY_MS
+     */
+    static FrameTimeline forPlayback(int[] delays) {
+        int[] playbackDelays = delays.clone();
+        for (int i = 0; i < playbackDelays.length; i++) {
+            if (playbackDelays[i] < FrameSequenceDrawable.MIN_DELAY_MS) {
+                playbackDelays[i] = (int) FrameSequenceDrawable.DEFAULT_DELAY_MS;
+            }
+        }
+        return new FrameTimeline(playbackDelays);
+    }
+
+    private final int[] mDelays;
+    private final long[] mTimestamps;
+    private final long mDuration;
+
+    FrameTimeline(int[] delays) {
+        mDelays = delays;
+        mTimestamps = new long[delays.length];
+        long timestamp = 0;
+        for (int i = 0; i < delays.length; i++) {
+            mTimestamps[i] = timestamp;
+            timestamp += delays[i];
+        }
+        mDuration = timestamp;
+    }
+
+    int getFrameCount() {
+        return mDelays.length;
+    }
+
+    int getDelay(int frameNr) {
+        return mDelays[frameNr];
+    }
+
+    long getTimestamp(int frameNr) {
+        return mTimestamps[frameNr];
+    }
+
+    long getDuration() {
+        return mDuration;
+    }
+
+    int[] getDelays() {
+        return mDelays.clone();
+    }
+
+    long[] getTimestamps() {
+        return mTimestamps.clone();
+    }
+
+    /**
+     * Find the frame which should be on screen at the time.
+     *
+     * @param timeMs time since the start of a loop, clamped into [0, duration).
+     * @return the last frame whose timestamp is not after timeMs, frames with zero delay are skipped over.
+     */
+    int getFrameIndex(long timeMs) {
+        int low = 0;
+        int high = mTimestamps.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mTimestamps[mid] <= timeMs) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+}
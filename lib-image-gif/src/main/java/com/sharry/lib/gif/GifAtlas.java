@@ -0,0 +1,214 @@
+package com.sharry.lib.gif;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * Gif 的纹理图集
+ * <p>
+ * 将 Gif 的所有帧(可降采样)绘制到若干张图集页中, 并记录每一帧所在的页, 区域与展示时长.
+ * 上层渲染器可以将多个动图贴纸合并为少量的纹理绘制, 避免每个贴纸各自持有双缓冲 Bitmap 并单独绘制.
+ *
+ * @author Sharry <a href="xiaoyu.zhu@1hai.cn">Contact me.</a>
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public final class GifAtlas {
+
+    /**
+     * Transparent gutter between frames, avoids bleeding of texture filtering.
+     */
+    private static final int CELL_PADDING = 1;
+
+    /**
+     * Render all frames of the gif into atlas pages.
+     *
+     * @param decoder      the gif, must not be used by others while rendering.
+     * @param inSampleSize do sample size for every frame.
+     * @param maxPageSize  max width and height of a page, such as the max texture size.
+     */
+    @WorkerThread
+    public static GifAtlas create(GifDecoder decoder, int inSampleSize, int maxPageSize) {
+        return create(decoder, inSampleSize, maxPageSize, FrameSequenceDrawable.DEFAULT_BITMAP_PROVIDER);
+    }
+
+    /**
+     * Render all frames of the gif into atlas pages.
+     *
+     * @param decoder        the gif, must not be used by others while rendering.
+     * @param inSampleSize   do sample size for every frame.
+     * @param maxPageSize    max width and height of a page, such as the max texture size.
+     * @param bitmapProvider provides the pages, they are given back on {@link #recycle()}.
+     */
+    @WorkerThread
+    public static GifAtlas create(GifDecoder decoder, int inSampleSize, int maxPageSize,
+                                  FrameSequenceDrawable.BitmapProvider bitmapProvider) {
+        if (decoder == null || bitmapProvider == null || inSampleSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        final int frameWidth = decoder.getWidth() / inSampleSize;
+        final int frameHeight = decoder.getHeight() / inSampleSize;
+        if (frameWidth <= 0 || frameHeight <= 0 || frameWidth > maxPageSize || frameHeight > maxPageSize) {
+            throw new IllegalArgumentException("frame [" + frameWidth + "x" + frameHeight
+                    + "] doesn't fit in page size " + maxPageSize);
+        }
+        return new GifAtlas(decoder, inSampleSize, frameWidth, frameHeight, maxPageSize, bitmapProvider);
+    }
+
+    private final FrameSequenceDrawable.BitmapProvider mBitmapProvider;
+    private final FrameTimeline mTimeline;
+    private final int mFrameWidth, mFrameHeight;
+    private final Bitmap[] mPages;
+    private final int[] mFramePages;
+    private final Rect[] mFrameRects;
+
+    private GifAtlas(GifDecoder decoder, int inSampleSize, int frameWidth, int frameHeight,
+                     int maxPageSize, FrameSequenceDrawable.BitmapProvider bitmapProvider) {
+        mBitmapProvider = bitmapProvider;
+        mTimeline = FrameTimeline.forPlayback(decoder.getFrameDelays());
+        mFrameWidth = frameWidth;
+        mFrameHeight = frameHeight;
+
+        // grid layout, every frame has the same size
+        final int frameCount = decoder.getFrameCount();
+        final int cellWidth = frameWidth + CELL_PADDING;
+        final int cellHeight = frameHeight + CELL_PADDING;
+        final int columns = (maxPageSize + CELL_PADDING) / cellWidth;
+        final int rows = (maxPageSize + CELL_PADDING) / cellHeight;
+        final int framesPerPage = columns * rows;
+        final int pageCount = (frameCount + framesPerPage - 1) / framesPerPage;
+        mPages = new Bitmap[pageCount];
+        mFramePages = new int[frameCount];
+        mFrameRects = new Rect[frameCount];
+
+        // frames are composed one after another in scratch, so each one only draws it's own changes
+        Bitmap scratch = Bitmap.createBitmap(frameWidth, frameHeight, Bitmap.Config.ARGB_8888);
+        Rect scratchRect = new Rect(0, 0, frameWidth, frameHeight);
+        Paint paint = new Paint();
+        Canvas canvas = new Canvas();
+        for (int page = 0; page < pageCount; page++) {
+            final int firstFrame = page * framesPerPage;
+            final int pageFrameCount = Math.min(framesPerPage, frameCount - firstFrame);
+            final int pageColumns = Math.min(columns, pageFrameCount);
+            final int pageRows = (pageFrameCount + columns - 1) / columns;
+            Bitmap pageBitmap = mBitmapProvider.acquireBitmap(
+                    pageColumns * cellWidth - CELL_PADDING, pageRows * cellHeight - CELL_PADDING);
+            pageBitmap.eraseColor(0);
+            mPages[page] = pageBitmap;
+            canvas.setBitmap(pageBitmap);
+            for (int i = 0; i < pageFrameCount; i++) {
+                final int frameNr = firstFrame + i;
+                final int left = (i % columns) * cellWidth;
+                final int top = (i / columns) * cellHeight;
+                decoder.getFrame(frameNr, scratch, frameNr - 1, inSampleSize);
+                Rect frameRect = new Rect(left, top, left + frameWidth, top + frameHeight);
+                canvas.drawBitmap(scratch, scratchRect, frameRect, paint);
+                mFramePages[frameNr] = page;
+                mFrameRects[frameNr] = frameRect;
+            }
+        }
+        canvas.setBitmap(null);
+        scratch.recycle();
+    }
+
+    public int getPageCount() {
+        return mPages.length;
+    }
+
+    /**
+     * Get a page, upload it as a texture.
+     */
+    public Bitmap getPage(int page) {
+        return mPages[page];
+    }
+
+    public int getFrameCount() {
+        return mFramePages.length;
+    }
+
+    public int getFrameWidth() {
+        return mFrameWidth;
+    }
+
+    public int getFrameHeight() {
+        return mFrameHeight;
+    }
+
+    /**
+     * Get the page that holds the frame.
+     */
+    public int getFramePage(int frameNr) {
+        return mFramePages[frameNr];
+    }
+
+    /**
+     * Get the area of the frame in it's page, in pixels.
+     */
+    public void getFrameRect(int frameNr, Rect outRect) {
+        outRect.set(mFrameRects[frameNr]);
+    }
+
+    /**
+     * Get the area of the frame in it's page, in texture coordinates.
+     */
+    public void getFrameUv(int frameNr, RectF outUv) {
+        final Rect rect = mFrameRects[frameNr];
+        final Bitmap page = mPages[mFramePages[frameNr]];
+        final float width = page.getWidth();
+        final float height = page.getHeight();
+        outUv.set(rect.left / width, rect.top / height, rect.right / width, rect.bottom / height);
+    }
+
+    /**
+     * Get the display duration of a frame as it is played by FrameSequenceDrawable.
+     *
+     * @return Unit is ms.
+     */
+    public int getFrameDelay(int frameNr) {
+        return mTimeline.getDelay(frameNr);
+    }
+
+    /**
+     * Get the duration of one loop.
+     *
+     * @return Unit is ms.
+     */
+    public long getDuration() {
+        return mTimeline.getDuration();
+    }
+
+    /**
+     * Find the frame which should be on screen at the time, so many stickers can share one clock.
+     *
+     * @param timeMs time since the animation started, loops are taken into account.
+     */
+    public int getFrameIndex(long timeMs) {
+        final long duration = mTimeline.getDuration();
+        return mTimeline.getFrameIndex(duration > 0 ? timeMs % duration : 0);
+    }
+
+    /**
+     * Draw a frame with canvas, for software renderers.
+     */
+    public void drawFrame(Canvas canvas, int frameNr, Rect dst, Paint paint) {
+        canvas.drawBitmap(mPages[mFramePages[frameNr]], mFrameRects[frameNr], dst, paint);
+    }
+
+    /**
+     * Give the pages back to the BitmapProvider, the atlas can't be used any more.
+     */
+    public void recycle() {
+        for (int i = 0; i < mPages.length; i++) {
+            if (mPages[i] != null) {
+                mBitmapProvider.releaseBitmap(mPages[i]);
+                mPages[i] = null;
+            }
+        }
+    }
+
+}
@@ -1,15 +1,25 @@
 package com.sharry.lib.gif;
 
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 
 /**
  * Gif 解码工具类
+ * <p>
+ * 解析后的数据不再修改, 可以被多个线程共享. 每个线程通过 {@link #createRenderContext()} 创建自己的绘制状态,
+ * 同一份数据只需要解析一次.
  *
  * @author Sharry <a href="xiaoyu.zhu@1hai.cn">Contact me.</a>
  * @version 1.0
@@ -19,6 +29,66 @@ public final class GifDecoder {
 
     private static final String TAG = GifDecoder.class.getSimpleName();
 
+    /**
+     * Size of the buffer used to copy stream data to native.
+     */
+    static final int TEMP_STORAGE_SIZE = 16 * 1024;
+
+    /**
+     * Layout of {@link #getFrameInfo()}, {@link #FRAME_INFO_STRIDE} ints per frame.
+     */
+    public static final int FRAME_INFO_STRIDE = 8;
+    public static final int FRAME_INFO_LEFT = 0;
+    public static final int FRAME_INFO_TOP = 1;
+    public static final int FRAME_INFO_WIDTH = 2;
+    public static final int FRAME_INFO_HEIGHT = 3;
+    /**
+     * One of the DISPOSAL_* values.
+     */
+    public static final int FRAME_INFO_DISPOSAL = 4;
+    /**
+     * Color index drawn as transparent, -1 if none.
+     */
+    public static final int FRAME_INFO_TRANSPARENT_INDEX = 5;
+    /**
+     * Display duration as declared in the gif, unit is ms.
+     */
+    public static final int FRAME_INFO_DELAY = 6;
+    /**
+     * A combination of the FRAME_FLAG_* bits.
+     */
+    public static final int FRAME_INFO_FLAGS = 7;
+
+    /**
+     * Frame disposal modes.
+     */
+    public static final int DISPOSAL_UNSPECIFIED = 0;
+    public static final int DISPOSAL_DO_NOT = 1;
+    public static final int DISPOSAL_BACKGROUND = 2;
+    public static final int DISPOSAL_PREVIOUS = 3;
+
+    /**
+     * The frame has no transparent color.
+     */
+    public static final int FRAME_FLAG_OPAQUE = 0x01;
+    /**
+     * The frame covers the whole canvas.
+     */
+    public static final int FRAME_FLAG_FULL_SCREEN = 0x02;
+    /**
+     * The frame is opaque and completely covers the previous one.
+     */
+    public static final int FRAME_FLAG_COVERS_PREVIOUS = 0x04;
+    /**
+     * The frame can be drawn from an empty canvas, so seeking to it is cheap.
+     */
+    public static final int FRAME_FLAG_KEY_FRAME = 0x08;
+    /**
+     * The frame has the same pixels as an earlier one and shares their storage, its own copy is released right
+     * after it is decoded.
+     */
+    public static final int FRAME_FLAG_SHARED_RASTER = 0x10;
+
     // /////////////////////////////////////////// Get instance //////////////////////////////////////////////////
 
     /**
@@ -29,7 +99,36 @@ public final class GifDecoder {
      */
     @Nullable
     public static GifDecoder decodeFilePath(String filePath) {
-        return nativeDecodeFile(filePath);
+        return decodeFilePath(filePath, -1, -1);
+    }
+
+    /**
+     * Get an instance of GifDecoder which only parsed the leading frames.
+     *
+     * @param maxFrameNr stop reading once this frame is parsed, numbered as stored in the file, -1 means no limit.
+     * @param maxTimeMs  stop reading once the frame on screen at this time by the raw delays is parsed, -1 means no
+     *                   limit. Playback only lengthens delays, so its frame at this time is parsed as well.
+     */
+    @Nullable
+    static GifDecoder decodeFilePath(String filePath, int maxFrameNr, long maxTimeMs) {
+        if (filePath == null) {
+            throw new IllegalArgumentException();
+        }
+        return nativeDecodeFile(filePath, maxFrameNr, maxTimeMs);
+    }
+
+    /**
+     * Get an instance of GifDecoder
+     *
+     * @param pfd a gif file descriptor, read from it's current position, the caller still owns it.
+     * @return an instance of GifDecoder, if decode failed will return null.
+     */
+    @Nullable
+    public static GifDecoder decodeFileDescriptor(ParcelFileDescriptor pfd) {
+        if (pfd == null) {
+            throw new IllegalArgumentException();
+        }
+        return nativeDecodeFileDescriptor(pfd.getFd());
     }
 
     /**
@@ -40,12 +139,23 @@ public final class GifDecoder {
      */
     @Nullable
     public static GifDecoder decodeStream(InputStream stream) {
-        if (stream == null) {
+        return decodeStream(stream, new byte[TEMP_STORAGE_SIZE], -1, -1);
+    }
+
+    /**
+     * Get an instance of GifDecoder which only parsed the leading frames.
+     *
+     * @param tempStorage buffer used to copy stream data to native, can be reused between calls on a thread.
+     * @param maxFrameNr  stop reading once this frame is parsed, numbered as stored in the file, -1 means no limit.
+     * @param maxTimeMs   stop reading once the frame on screen at this time by the raw delays is parsed, -1 means no
+     *                    limit. Playback only lengthens delays, so its frame at this time is parsed as well.
+     */
+    @Nullable
+    static GifDecoder decodeStream(InputStream stream, byte[] tempStorage, int maxFrameNr, long maxTimeMs) {
+        if (stream == null || tempStorage == null) {
             throw new IllegalArgumentException();
         }
-        // use buffer pool
-        byte[] tempStorage = new byte[16 * 1024];
-        return nativeDecodeStream(stream, tempStorage);
+        return nativeDecodeStream(stream, tempStorage, maxFrameNr, maxTimeMs);
     }
 
     /**
@@ -98,12 +208,80 @@ public final class GifDecoder {
         return nativeDecodeByteBuffer(buffer, buffer.position(), buffer.remaining());
     }
 
+    /**
+     * Get an instance of GifDecoder
+     * <p>
+     * Uncompressed assets are read from the memory mapped APK, compressed ones are inflated to native memory
+     * first, none of them are copied through Java.
+     *
+     * @param assets the AssetManager the asset is packaged in.
+     * @param path   the asset path, relative to the assets directory.
+     * @return an instance of GifDecoder, if the asset does not exist or decode failed will return null.
+     */
+    @Nullable
+    public static GifDecoder decodeAsset(AssetManager assets, String path) {
+        if (assets == null || path == null) {
+            throw new IllegalArgumentException();
+        }
+        return nativeDecodeAsset(assets, path);
+    }
+
+    /**
+     * Get an instance of GifDecoder
+     * <p>
+     * Resources stored uncompressed in the APK, which aapt does for gif, are memory mapped at their offset in
+     * the APK. Compressed ones fall back to {@link #decodeStream(InputStream)}.
+     *
+     * @param res the Resources the gif is packaged in.
+     * @param id  the resource id, such as a R.drawable or R.raw.
+     * @return an instance of GifDecoder, if decode failed will return null.
+     * @throws Resources.NotFoundException if the resource does not exist.
+     */
+    @Nullable
+    public static GifDecoder decodeResource(Resources res, int id) {
+        if (res == null) {
+            throw new IllegalArgumentException();
+        }
+        AssetFileDescriptor afd = null;
+        try {
+            afd = res.openRawResourceFd(id);
+        } catch (Resources.NotFoundException e) {
+            // the resource is compressed, or does not exist, which openRawResource reports
+        }
+        if (afd != null) {
+            try {
+                return nativeDecodeFileDescriptorRange(afd.getParcelFileDescriptor().getFd(),
+                        afd.getStartOffset(), afd.getLength());
+            } finally {
+                closeQuietly(afd);
+            }
+        }
+        InputStream stream = res.openRawResource(id);
+        try {
+            return decodeStream(stream);
+        } finally {
+            closeQuietly(stream);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
     // /////////////////////////////////////////// Inner Method. //////////////////////////////////////////////////
 
     private long mNativePtr;
     private final int mWidth, mHeight, mFrameCount, mLooperCount;
     private final boolean mIsOpaque;
     private final long mDuration;
+    private final FrameTimeline mTimeline;
+    private final int[] mFrameInfo;
+    // used by getFrame, calls on the decoder itself are serialized on it
+    private final RenderContext mRenderContext;
 
     // invoke at native
     private GifDecoder(long nativePtr, int width, int height, boolean isOpaque, int frameCount, int looperCount, long duration) {
@@ -114,6 +292,9 @@ public final class GifDecoder {
         this.mFrameCount = frameCount;
         this.mLooperCount = looperCount;
         this.mDuration = duration;
+        this.mTimeline = new FrameTimeline(nativeGetFrameDelays(nativePtr));
+        this.mFrameInfo = nativeGetFrameInfo(nativePtr);
+        this.mRenderContext = new RenderContext(this, nativeCreateRenderContext(nativePtr));
         if (BuildConfig.DEBUG) {
             Log.e(TAG, toString());
         }
@@ -136,12 +317,45 @@ public final class GifDecoder {
      *
      * @param frameNr         the frame that u wanted.
      * @param output          in and out args, will fill pixels at native.
-     * @param previousFrameNr previous frame number, u can pass -1.
+     * @param previousFrameNr the frame output already holds, it's content will be reused if it is before frameNr,
+     *                        u can pass -1. Frames in between are composed from the nearest key frame,
+     *                        so jumping far ahead is cheap.
      * @param inSampleSize    do sample size, is power of 2.
      * @return next frame duration. Unit is ms
      */
     public long getFrame(int frameNr, Bitmap output, int previousFrameNr, int inSampleSize) {
-        return nativeGetFrame(mNativePtr, frameNr, output, previousFrameNr, inSampleSize);
+        return getFrame(frameNr, output, previousFrameNr, inSampleSize, null);
+    }
+
+    /**
+     * Get Bitmap at require frame, only the pixels inside the crop rect are composed.
+     *
+     * @param frameNr         the frame that u wanted.
+     * @param output          in and out args, at least crop.width() / inSampleSize x crop.height() / inSampleSize,
+     *                        it's top left pixel maps to the top left of crop.
+     * @param previousFrameNr the frame output already holds, only reusable if it was drawn with the same crop
+     *                        and inSampleSize, u can pass -1.
+     * @param inSampleSize    do sample size, is power of 2.
+     * @param crop            the region of the gif canvas to draw, null means the whole canvas.
+     * @return next frame duration. Unit is ms
+     */
+    public long getFrame(int frameNr, Bitmap output, int previousFrameNr, int inSampleSize, @Nullable Rect crop) {
+        return mRenderContext.getFrame(frameNr, output, previousFrameNr, inSampleSize, crop);
+    }
+
+    /**
+     * Create a render context, which draws frames independently of the others and of this decoder.
+     * <p>
+     * Contexts only hold their own composing state and share the parsed gif, so they are cheap. Use one per thread
+     * to draw the same gif concurrently, the parsed data stays alive until the last context is released.
+     *
+     * @return a new context, release it by {@link RenderContext#release()} when no longer needed.
+     */
+    public synchronized RenderContext createRenderContext() {
+        if (mNativePtr == 0) {
+            throw new IllegalStateException("GifDecoder has been destroyed");
+        }
+        return new RenderContext(this, nativeCreateRenderContext(mNativePtr));
     }
 
     /**
@@ -164,6 +378,8 @@ public final class GifDecoder {
 
     /**
      * Get gif frame count.
+     * <p>
+     * Consecutive identical frames are merged into one, which is displayed for the sum of their delays.
      *
      * @return gif frame count.
      */
@@ -178,6 +394,63 @@ public final class GifDecoder {
         return mLooperCount;
     }
 
+    /**
+     * Get the display duration of a frame.
+     *
+     * @param frameNr the frame number.
+     * @return Unit is ms, as declared in the gif.
+     */
+    public int getFrameDelay(int frameNr) {
+        return mTimeline.getDelay(frameNr);
+    }
+
+    /**
+     * Get the display duration of every frame.
+     *
+     * @return a copy of the delay table, unit is ms.
+     */
+    public int[] getFrameDelays() {
+        return mTimeline.getDelays();
+    }
+
+    /**
+     * Get the metadata of every frame, parsed once when the gif was decoded.
+     *
+     * @return a copy of the table, {@link #FRAME_INFO_STRIDE} ints per frame, indexed by the FRAME_INFO_* offsets.
+     */
+    public int[] getFrameInfo() {
+        return mFrameInfo.clone();
+    }
+
+    /**
+     * Get the start time of every frame since the start of a loop.
+     *
+     * @return a copy of the cumulative timestamps, unit is ms.
+     */
+    public long[] getFrameTimestamps() {
+        return mTimeline.getTimestamps();
+    }
+
+    /**
+     * Get the start time of a frame since the start of a loop.
+     *
+     * @param frameNr the frame number.
+     * @return Unit is ms.
+     */
+    public long getFrameTimestamp(int frameNr) {
+        return mTimeline.getTimestamp(frameNr);
+    }
+
+    /**
+     * Find the frame which should be on screen at the time, by binary search.
+     *
+     * @param timeMs time since the start of a loop, unit is ms.
+     * @return the frame number, clamped into [0, frameCount).
+     */
+    public int getFrameIndex(long timeMs) {
+        return mTimeline.getFrameIndex(timeMs);
+    }
+
     /**
      * Get gif background color have opaque or not.
      *
@@ -199,17 +472,18 @@ public final class GifDecoder {
     /**
      * Destroy resource.
      */
-    public void destroy() {
-        nativeDestroy(mNativePtr);
+    public synchronized void destroy() {
+        if (mNativePtr != 0) {
+            mRenderContext.release();
+            nativeDestroy(mNativePtr);
+            mNativePtr = 0;
+        }
     }
 
     @Override
     protected void finalize() throws Throwable {
         try {
-            if (mNativePtr != 0) {
-                nativeDestroy(mNativePtr);
-                mNativePtr = 0;
-            }
+            destroy();
         } finally {
             super.finalize();
         }
@@ -220,15 +494,32 @@ public final class GifDecoder {
         System.loadLibrary("gifkit");
     }
 
-    private static native GifDecoder nativeDecodeFile(String filePath);
+    private static native GifDecoder nativeDecodeFile(String filePath, int maxFrameNr, long maxTimeMs);
 
-    private static native GifDecoder nativeDecodeStream(InputStream stream, byte[] tempStorage);
+    private static native GifDecoder nativeDecodeFileDescriptor(int fd);
+
+    private static native GifDecoder nativeDecodeStream(InputStream stream, byte[] tempStorage, int maxFrameNr, long maxTimeMs);
 
     private static native GifDecoder nativeDecodeByteArray(byte[] data, int offset, int length);
 
     private static native GifDecoder nativeDecodeByteBuffer(ByteBuffer buffer, int position, int remaining);
 
-    private static native long nativeGetFrame(long decoder, int frameNr, Bitmap output, int previousFrameNr, int inSampleSize);
+    private static native GifDecoder nativeDecodeFileDescriptorRange(int fd, long offset, long length);
+
+    private static native GifDecoder nativeDecodeAsset(AssetManager assets, String path);
+
+    private static native long nativeCreateRenderContext(long nativePtr);
+
+    static native long nativeGetFrame(long renderContext, int frameNr, Bitmap output, int previousFrameNr, int inSampleSize,
+                                      int cropLeft, int cropTop, int cropWidth, int cropHeight);
+
+    private static native int[] nativeGetFrameDelays(long nativePtr);
+
+    private static native int[] nativeGetFrameInfo(long nativePtr);
+
+    static native int nativeGetRenderFrameNr(long renderContext);
+
+    static native void nativeReleaseRenderContext(long renderContext);
 
     private static native void nativeDestroy(long nativePtr);
 }
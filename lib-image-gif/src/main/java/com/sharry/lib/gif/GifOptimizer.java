@@ -0,0 +1,317 @@
+package com.sharry.lib.gif;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Gif 压缩工具类
+ * <p>
+ * 逐帧流式地解码, 合成后与上一帧比较, 只重新编码发生变化的区域, 去除重复帧, 并将色表缩减为实际使用的颜色,
+ * 所有颜色都在全局色表中的帧不再写入局部色表. 内存占用只与画布尺寸有关, 与帧数无关.
+ * <p>
+ * 不改变 inSampleSize 时输出与源文件逐像素一致, 结果更大时保留源文件.
+ *
+ * @author Sharry <a href="xiaoyu.zhu@1hai.cn">Contact me.</a>
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public final class GifOptimizer {
+
+    /**
+     * Result of a file, same as OPTIMIZE_RESULT_* in native.
+     */
+    public static final int RESULT_OK = 0;
+    public static final int RESULT_READ_ERROR = 1;
+    public static final int RESULT_WRITE_ERROR = 2;
+    /**
+     * The file can't be re-encoded without loss, e.g. a frame needs more than 256 colors or the canvas is
+     * smaller than the sample size, the source is kept.
+     */
+    public static final int RESULT_UNSUPPORTED = 3;
+
+    /**
+     * Layout of the report filled at native.
+     */
+    private static final int REPORT_SOURCE_PIXELS = 0;
+    private static final int REPORT_OUTPUT_PIXELS = 1;
+    private static final int REPORT_SOURCE_FRAME_COUNT = 2;
+    private static final int REPORT_OUTPUT_FRAME_COUNT = 3;
+    private static final int REPORT_OUTPUT_WIDTH = 4;
+    private static final int REPORT_OUTPUT_HEIGHT = 5;
+    private static final int REPORT_SIZE = 6;
+
+    private final int mInSampleSize;
+
+    public GifOptimizer() {
+        this(1);
+    }
+
+    /**
+     * @param inSampleSize downscale the output like {@link GifDecoder#getFrame} does, 1 keeps the size.
+     */
+    public GifOptimizer(int inSampleSize) {
+        if (inSampleSize < 1) {
+            throw new IllegalArgumentException("inSampleSize must be positive");
+        }
+        this.mInSampleSize = inSampleSize;
+    }
+
+    /**
+     * Optimize a gif file, can be called from several threads at the same time.
+     *
+     * @param source the gif to optimize.
+     * @param output where to write the optimized gif, is deleted when the source can't be read, must not be the
+     *               source itself since it is truncated before the source is read.
+     * @return the report of the file, never null.
+     * @throws IllegalArgumentException if the output is the source.
+     */
+    @NonNull
+    public Report optimize(File source, File output) {
+        if (source == null || output == null) {
+            throw new IllegalArgumentException();
+        }
+        checkOutput(source, output);
+        long[] values = new long[REPORT_SIZE];
+        int result = nativeOptimize(source.getPath(), output.getPath(), mInSampleSize, values);
+        final long sourceBytes = source.length();
+        boolean optimized = result == RESULT_OK;
+        if (result == RESULT_UNSUPPORTED) {
+            // 统计的数据只到中止的那一帧
+            values = new long[REPORT_SIZE];
+        } else if (result == RESULT_OK && mInSampleSize == 1 && output.length() >= sourceBytes) {
+            // 没有变小时保留源文件
+            optimized = false;
+        }
+        if (result == RESULT_READ_ERROR || result == RESULT_WRITE_ERROR) {
+            output.delete();
+            return new Report(source, output, result, false, sourceBytes, 0, values);
+        }
+        if (!optimized) {
+            try {
+                copyFile(source, output);
+            } catch (IOException e) {
+                output.delete();
+                return new Report(source, output, RESULT_WRITE_ERROR, false, sourceBytes, 0, values);
+            }
+            values[REPORT_OUTPUT_PIXELS] = values[REPORT_SOURCE_PIXELS];
+            values[REPORT_OUTPUT_FRAME_COUNT] = values[REPORT_SOURCE_FRAME_COUNT];
+        }
+        return new Report(source, output, result, optimized, sourceBytes, output.length(), values);
+    }
+
+    /**
+     * Optimize gif files in parallel, each file is written to the output directory with its own name.
+     *
+     * @param sources     the gifs to optimize, their names should be unique.
+     * @param outputDir   the directory to write the optimized gifs to, must not contain any of the sources.
+     * @param parallelism how many files are optimized at the same time, each one needs about 4 canvases of memory.
+     * @return the reports in the order of sources.
+     * @throws IllegalArgumentException if any source would be overwritten by its output, nothing is optimized then.
+     */
+    @NonNull
+    public List<Report> optimize(List<File> sources, final File outputDir, int parallelism)
+            throws InterruptedException {
+        if (sources == null || outputDir == null || parallelism < 1) {
+            throw new IllegalArgumentException();
+        }
+        // 开始前检查全部文件, 避免处理到一半才失败
+        for (File source : sources) {
+            checkOutput(source, new File(outputDir, source.getName()));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(sources.size(), 1)));
+        try {
+            List<Future<Report>> futures = new ArrayList<>(sources.size());
+            for (final File source : sources) {
+                futures.add(executor.submit(new Callable<Report>() {
+                    @Override
+                    public Report call() {
+                        return optimize(source, new File(outputDir, source.getName()));
+                    }
+                }));
+            }
+            List<Report> reports = new ArrayList<>(futures.size());
+            for (Future<Report> future : futures) {
+                try {
+                    reports.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+            return reports;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The encoder truncates the output when it opens it, writing to the source would destroy it.
+     */
+    private static void checkOutput(File source, File output) {
+        boolean same;
+        try {
+            same = source.getCanonicalFile().equals(output.getCanonicalFile());
+        } catch (IOException e) {
+            same = source.getAbsoluteFile().equals(output.getAbsoluteFile());
+        }
+        if (same) {
+            throw new IllegalArgumentException("Output is the source: " + source);
+        }
+    }
+
+    private static void copyFile(File source, File output) throws IOException {
+        FileInputStream in = null;
+        FileOutputStream out = null;
+        try {
+            in = new FileInputStream(source);
+            out = new FileOutputStream(output);
+            FileChannel inChannel = in.getChannel();
+            FileChannel outChannel = out.getChannel();
+            long position = 0;
+            final long size = inChannel.size();
+            while (position < size) {
+                position += inChannel.transferTo(position, size - position, outChannel);
+            }
+        } finally {
+            closeQuietly(in);
+            closeQuietly(out);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    /**
+     * The savings of a file, decode cost is measured as the pixels LZW decoding has to produce.
+     */
+    public static final class Report {
+
+        private final File mSource;
+        private final File mOutput;
+        private final int mResult;
+        private final boolean mOptimized;
+        private final long mSourceBytes;
+        private final long mOutputBytes;
+        private final long[] mValues;
+
+        private Report(File source, File output, int result, boolean optimized, long sourceBytes,
+                       long outputBytes, long[] values) {
+            this.mSource = source;
+            this.mOutput = output;
+            this.mResult = result;
+            this.mOptimized = optimized;
+            this.mSourceBytes = sourceBytes;
+            this.mOutputBytes = outputBytes;
+            this.mValues = values;
+        }
+
+        public File getSource() {
+            return mSource;
+        }
+
+        public File getOutput() {
+            return mOutput;
+        }
+
+        /**
+         * One of RESULT_*, the output only exists for RESULT_OK and RESULT_UNSUPPORTED.
+         */
+        public int getResult() {
+            return mResult;
+        }
+
+        /**
+         * False if the output is a copy of the source.
+         */
+        public boolean isOptimized() {
+            return mOptimized;
+        }
+
+        public long getSourceBytes() {
+            return mSourceBytes;
+        }
+
+        public long getOutputBytes() {
+            return mOutputBytes;
+        }
+
+        public long getSavedBytes() {
+            return mOutputBytes > 0 ? mSourceBytes - mOutputBytes : 0;
+        }
+
+        /**
+         * The pixels decoded to play the source once, 0 if the source couldn't be re-encoded.
+         */
+        public long getSourcePixels() {
+            return mValues[REPORT_SOURCE_PIXELS];
+        }
+
+        /**
+         * The pixels decoded to play the output once, 0 if the source couldn't be re-encoded.
+         */
+        public long getOutputPixels() {
+            return mValues[REPORT_OUTPUT_PIXELS];
+        }
+
+        public long getSavedPixels() {
+            return getSourcePixels() - getOutputPixels();
+        }
+
+        public int getSourceFrameCount() {
+            return (int) mValues[REPORT_SOURCE_FRAME_COUNT];
+        }
+
+        public int getOutputFrameCount() {
+            return (int) mValues[REPORT_OUTPUT_FRAME_COUNT];
+        }
+
+        public int getOutputWidth() {
+            return (int) mValues[REPORT_OUTPUT_WIDTH];
+        }
+
+        public int getOutputHeight() {
+            return (int) mValues[REPORT_OUTPUT_HEIGHT];
+        }
+
+        @Override
+        public String toString() {
+            return "Report{" +
+                    "source=" + mSource.getName() +
+                    ", result=" + mResult +
+                    ", optimized=" + mOptimized +
+                    ", bytes=" + mSourceBytes + "->" + mOutputBytes +
+                    ", pixels=" + getSourcePixels() + "->" + getOutputPixels() +
+                    ", frames=" + getSourceFrameCount() + "->" + getOutputFrameCount() +
+                    ", size=" + getOutputWidth() + "x" + getOutputHeight() +
+                    '}';
+        }
+    }
+
+    // /////////////////////////////////////////// Native Method. //////////////////////////////////////////////////
+    static {
+        System.loadLibrary("gifkit");
+    }
+
+    private static native int nativeOptimize(String sourcePath, String outputPath, int inSampleSize, long[] report);
+
+}
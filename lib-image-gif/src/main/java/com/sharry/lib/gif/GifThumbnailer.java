@@ -0,0 +1,343 @@
+package com.sharry.lib.gif;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gif 封面帧提取工具
+ * <p>
+ * 只解析到需要的帧为止, 之后的数据不再读取, 并直接绘制到目标尺寸的 Bitmap 上.
+ * 批量提取在固定线程数的线程池中执行, 每个线程复用自己的读取缓冲与绘制缓冲, 使用完毕后调用 {@link #close()} 释放.
+ *
+ * @author Sharry <a href="xiaoyu.zhu@1hai.cn">Contact me.</a>
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public final class GifThumbnailer implements Closeable {
+
+    // /////////////////////////////////////////// Source define //////////////////////////////////////////////////
+
+    /**
+     * A gif source to extract thumbnail from.
+     */
+    public interface Source {
+
+        /**
+         * Open the gif stream, the thumbnailer will close it after the required frame is read.
+         */
+        InputStream open() throws IOException;
+
+    }
+
+    /**
+     * Get a source of gif file, which is read at native directly.
+     */
+    public static Source fileSource(String filePath) {
+        if (filePath == null) {
+            throw new IllegalArgumentException();
+        }
+        return new FileSource(filePath);
+    }
+
+    private static final class FileSource implements Source {
+
+        private final String mFilePath;
+
+        private FileSource(String filePath) {
+            mFilePath = filePath;
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            return new FileInputStream(mFilePath);
+        }
+    }
+
+    // /////////////////////////////////////////// Object define //////////////////////////////////////////////////
+
+    private final int mWidth, mHeight;
+    private final ExecutorService mExecutor;
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    // per thread scratch buffers, reused between sources
+    private final ThreadLocal<byte[]> mTempStorage = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[GifDecoder.TEMP_STORAGE_SIZE];
+        }
+    };
+    private final ThreadLocal<Bitmap> mScratchBitmap = new ThreadLocal<>();
+    // every thread's scratch bitmap, recycled on close
+    private final List<Bitmap> mScratchBitmaps = new ArrayList<>();
+    private final Object mLock = new Object();
+    private int mActiveDecodes;
+    private boolean mClosed;
+
+    /**
+     * @param width       max width of the thumbnails.
+     * @param height      max height of the thumbnails.
+     * @param threadCount number of threads used by the submit methods.
+     */
+    public GifThumbnailer(int width, int height, int threadCount) {
+        if (width <= 0 || height <= 0 || threadCount <= 0) {
+            throw new IllegalArgumentException();
+        }
+        mWidth = width;
+        mHeight = height;
+        mExecutor = new ThreadPoolExecutor(threadCount, threadCount,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(@NonNull final Runnable r) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                r.run();
+                            }
+                        }, "GifThumbnailer #" + mCount.incrementAndGet());
+                    }
+                });
+    }
+
+    // /////////////////////////////////////////// Synchronous //////////////////////////////////////////////////
+
+    /**
+     * Extract the frame as a thumbnail on the calling thread.
+     *
+     * @param frameNr the frame to extract, numbered as stored in the gif file, the last frame is used if the gif is shorter.
+     * @return a bitmap fits in the thumbnail size with gif's aspect ratio, null if decode failed.
+     */
+    @WorkerThread
+    @Nullable
+    public Bitmap decodeFrame(Source source, int frameNr) throws IOException {
+        if (frameNr < 0) {
+            throw new IllegalArgumentException("invalid frame number " + frameNr);
+        }
+        return decode(source, frameNr, -1);
+    }
+
+    /**
+     * Extract the frame on screen at the time as a thumbnail on the calling thread.
+     *
+     * @param timeMs time since the start of the gif as {@link FrameSequenceDrawable} plays it, i.e. short delays are
+     *               replaced by the default one, the last frame is used if the gif is shorter.
+     * @return a bitmap fits in the thumbnail size with gif's aspect ratio, null if decode failed.
+     */
+    @WorkerThread
+    @Nullable
+    public Bitmap decodeTime(Source source, long timeMs) throws IOException {
+        if (timeMs < 0) {
+            throw new IllegalArgumentException("invalid time " + timeMs);
+        }
+        return decode(source, -1, timeMs);
+    }
+
+    // /////////////////////////////////////////// Asynchronous //////////////////////////////////////////////////
+
+    public Future<Bitmap> submitFrame(final Source source, final int frameNr) {
+        return mExecutor.submit(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() throws Exception {
+                return decodeFrame(source, frameNr);
+            }
+        });
+    }
+
+    public Future<Bitmap> submitTime(final Source source, final long timeMs) {
+        return mExecutor.submit(new Callable<Bitmap>() {
+            @Override
+            public Bitmap call() throws Exception {
+                return decodeTime(source, timeMs);
+            }
+        });
+    }
+
+    /**
+     * Extract the frame of every source on the thumbnailer's threads.
+     *
+     * @return futures in the same order as sources.
+     */
+    public List<Future<Bitmap>> submitFrames(List<? extends Source> sources, int frameNr) {
+        List<Future<Bitmap>> futures = new ArrayList<>(sources.size());
+        for (Source source : sources) {
+            futures.add(submitFrame(source, frameNr));
+        }
+        return futures;
+    }
+
+    /**
+     * Extract the frame on screen at the time of every source on the thumbnailer's threads.
+     *
+     * @return futures in the same order as sources.
+     */
+    public List<Future<Bitmap>> submitTimes(List<? extends Source> sources, long timeMs) {
+        List<Future<Bitmap>> futures = new ArrayList<>(sources.size());
+        for (Source source : sources) {
+            futures.add(submitTime(source, timeMs));
+        }
+        return futures;
+    }
+
+    /**
+     * Stop accepting new sources, the submitted ones still run.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Stop the thumbnailer, the sources not started yet are cancelled and the scratch bitmaps are recycled once
+     * the running ones finish. The thumbnails already returned are not affected.
+     */
+    @Override
+    public void close() {
+        for (Runnable pending : mExecutor.shutdownNow()) {
+            if (pending instanceof Future) {
+                ((Future<?>) pending).cancel(false);
+            }
+        }
+        synchronized (mLock) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            if (mActiveDecodes == 0) {
+                recycleScratchBitmapsLocked();
+            }
+        }
+    }
+
+    // /////////////////////////////////////////// Inner Method. //////////////////////////////////////////////////
+
+    private Bitmap decode(Source source, int frameNr, long timeMs) throws IOException {
+        if (source == null) {
+            throw new IllegalArgumentException();
+        }
+        synchronized (mLock) {
+            if (mClosed) {
+                throw new IllegalStateException("GifThumbnailer is closed");
+            }
+            mActiveDecodes++;
+        }
+        try {
+            return decodeInternal(source, frameNr, timeMs);
+        } finally {
+            synchronized (mLock) {
+                // 关闭时仍有解码在进行, 由最后一个结束的解码回收
+                if (--mActiveDecodes == 0 && mClosed) {
+                    recycleScratchBitmapsLocked();
+                }
+            }
+        }
+    }
+
+    private Bitmap decodeInternal(Source source, int frameNr, long timeMs) throws IOException {
+        GifDecoder decoder;
+        if (source instanceof FileSource) {
+            decoder = GifDecoder.decodeFilePath(((FileSource) source).mFilePath, frameNr, timeMs);
+        } else {
+            InputStream stream = source.open();
+            try {
+                decoder = GifDecoder.decodeStream(stream, mTempStorage.get(), frameNr, timeMs);
+            } finally {
+                stream.close();
+            }
+        }
+        if (decoder == null) {
+            return null;
+        }
+        try {
+            // parsing stopped right after the raw frameNr, duplicates are only collapsed into
+            // earlier frames, so the raw frame is always part of the last logical frame.
+            // time is resolved as the drawable plays it, the native cut-off uses the raw delays
+            // which are never longer, so the frame on screen at timeMs has been parsed
+            int target = timeMs >= 0
+                    ? FrameTimeline.forPlayback(decoder.getFrameDelays()).getFrameIndex(timeMs)
+                    : decoder.getFrameCount() - 1;
+            return render(decoder, target);
+        } finally {
+            decoder.destroy();
+        }
+    }
+
+    private Bitmap render(GifDecoder decoder, int frameNr) {
+        final int gifWidth = decoder.getWidth();
+        final int gifHeight = decoder.getHeight();
+        // fit center, never scale up
+        final float scale = Math.min(1f, Math.min(1f * mWidth / gifWidth, 1f * mHeight / gifHeight));
+        final int outWidth = Math.max(1, Math.round(gifWidth * scale));
+        final int outHeight = Math.max(1, Math.round(gifHeight * scale));
+        final Bitmap output = Bitmap.createBitmap(outWidth, outHeight, Bitmap.Config.ARGB_8888);
+
+        // compose at the largest sample size that is still not smaller than output
+        final int inSampleSize = Math.max(1, Math.min(gifWidth / outWidth, gifHeight / outHeight));
+        final int sampledWidth = gifWidth / inSampleSize;
+        final int sampledHeight = gifHeight / inSampleSize;
+        if (sampledWidth == outWidth && sampledHeight == outHeight) {
+            decoder.getFrame(frameNr, output, -1, inSampleSize);
+            return output;
+        }
+        Bitmap scratch = acquireScratchBitmap(sampledWidth, sampledHeight);
+        decoder.getFrame(frameNr, scratch, -1, inSampleSize);
+        new Canvas(output).drawBitmap(scratch,
+                new Rect(0, 0, sampledWidth, sampledHeight),
+                new Rect(0, 0, outWidth, outHeight),
+                mPaint);
+        return output;
+    }
+
+    private Bitmap acquireScratchBitmap(int minWidth, int minHeight) {
+        Bitmap scratch = mScratchBitmap.get();
+        if (scratch == null || scratch.getWidth() < minWidth || scratch.getHeight() < minHeight) {
+            int width = minWidth;
+            int height = minHeight;
+            if (scratch != null) {
+                width = Math.max(width, scratch.getWidth());
+                height = Math.max(height, scratch.getHeight());
+                synchronized (mLock) {
+                    mScratchBitmaps.remove(scratch);
+                }
+                scratch.recycle();
+            }
+            scratch = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mScratchBitmap.set(scratch);
+            synchronized (mLock) {
+                mScratchBitmaps.add(scratch);
+            }
+        }
+        return scratch;
+    }
+
+    private void recycleScratchBitmapsLocked() {
+        for (Bitmap scratch : mScratchBitmaps) {
+            scratch.recycle();
+        }
+        mScratchBitmaps.clear();
+    }
+
+}
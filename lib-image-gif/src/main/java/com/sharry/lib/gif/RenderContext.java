@@ -0,0 +1,111 @@
+package com.sharry.lib.gif;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Gif 的绘制状态
+ * <p>
+ * 持有 DISPOSE_PREVIOUS 帧的快照与上一次绘制的帧, 与其他 RenderContext 共享 {@link GifDecoder} 解析后的数据.
+ * 不同线程应使用各自的 RenderContext, 通过 {@link GifDecoder#createRenderContext()} 创建.
+ *
+ * @author Sharry <a href="xiaoyu.zhu@1hai.cn">Contact me.</a>
+ * @version 1.0
+ * @since 2026-10-18
+ */
+public final class RenderContext {
+
+    private final GifDecoder mDecoder;
+    private long mNativePtr;
+
+    RenderContext(GifDecoder decoder, long nativePtr) {
+        this.mDecoder = decoder;
+        this.mNativePtr = nativePtr;
+    }
+
+    /**
+     * Get the decoder this context draws.
+     */
+    public GifDecoder getDecoder() {
+        return mDecoder;
+    }
+
+    /**
+     * Get Bitmap at require frame.
+     *
+     * @see GifDecoder#getFrame(int, Bitmap, int, int, Rect)
+     */
+    public long getFrame(int frameNr, Bitmap output, int previousFrameNr, int inSampleSize) {
+        return getFrame(frameNr, output, previousFrameNr, inSampleSize, null);
+    }
+
+    /**
+     * Get Bitmap at require frame, only the pixels inside the crop rect are composed.
+     *
+     * @see GifDecoder#getFrame(int, Bitmap, int, int, Rect)
+     */
+    public synchronized long getFrame(int frameNr, Bitmap output, int previousFrameNr, int inSampleSize,
+                                      @Nullable Rect crop) {
+        checkReleased();
+        if (crop == null) {
+            return GifDecoder.nativeGetFrame(mNativePtr, frameNr, output, previousFrameNr, inSampleSize,
+                    0, 0, mDecoder.getWidth(), mDecoder.getHeight());
+        }
+        return GifDecoder.nativeGetFrame(mNativePtr, frameNr, output, previousFrameNr, inSampleSize,
+                crop.left, crop.top, crop.width(), crop.height());
+    }
+
+    /**
+     * Draw the frame after the one this context drew last, wraps to the first frame after the last one.
+     *
+     * @param output must still hold the frame this context drew last, with the same inSampleSize and crop.
+     * @return next frame duration. Unit is ms
+     */
+    public synchronized long advance(Bitmap output, int inSampleSize, @Nullable Rect crop) {
+        final int frameNr = getFrameNr();
+        final int nextFrameNr = (frameNr + 1) % mDecoder.getFrameCount();
+        return getFrame(nextFrameNr, output, nextFrameNr == 0 ? -1 : frameNr, inSampleSize, crop);
+    }
+
+    /**
+     * Get the frame this context drew last.
+     *
+     * @return the frame number, -1 if nothing has been drawn yet.
+     */
+    public synchronized int getFrameNr() {
+        checkReleased();
+        return GifDecoder.nativeGetRenderFrameNr(mNativePtr);
+    }
+
+    /**
+     * Release the composing state, the parsed gif is released with the last context or the decoder.
+     */
+    public synchronized void release() {
+        if (mNativePtr != 0) {
+            GifDecoder.nativeReleaseRenderContext(mNativePtr);
+            mNativePtr = 0;
+        }
+    }
+
+    public synchronized boolean isReleased() {
+        return mNativePtr == 0;
+    }
+
+    private void checkReleased() {
+        if (mNativePtr == 0) {
+            throw new IllegalStateException("RenderContext has been released");
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            release();
+        } finally {
+            super.finalize();
+        }
+    }
+
+}
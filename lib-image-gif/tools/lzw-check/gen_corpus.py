@@ -0,0 +1,185 @@
+#!/usr/bin/env python3
+# 生成 LZW 解码回归用的 gif 语料, 同一个 seed 生成的文件完全相同.
+#
+# usage: gen_corpus.py <seed> <output dir> <count>
+#   v*.gif: 合法文件, 覆盖各种码长, 交错, 清除码时机与数据块长度
+#   m*.gif: 合法文件随机改写/截断/插入后的损坏文件
+#   g*.gif: 合法文件头后跟随机 LZW 数据
+import os
+import random
+import struct
+import sys
+
+R = random.Random(int(sys.argv[1]))
+OUT = sys.argv[2]
+COUNT = int(sys.argv[3])
+
+
+def lzw(pixels, mcs, mode):
+    clear = 1 << mcs
+    eof = clear + 1
+    codes = []
+    state = {}
+
+    def reset():
+        state['table'] = {(c,): c for c in range(clear)}
+        state['size'] = mcs + 1
+        state['next'] = eof + 1
+
+    reset()
+    codes.append((clear, state['size']))
+    if not pixels:
+        codes.append((eof, state['size']))
+        return codes
+    w = (pixels[0],)
+    for p in pixels[1:]:
+        wc = w + (p,)
+        if wc in state['table']:
+            w = wc
+            continue
+        codes.append((state['table'][w], state['size']))
+        if state['next'] < 4096:
+            state['table'][wc] = state['next']
+            state['next'] += 1
+            if state['next'] > (1 << state['size']) and state['size'] < 12:
+                state['size'] += 1
+        elif mode == 'clear' or (mode == 'rand' and R.random() < 0.5):
+            # 码表满时发送清除码, 否则继续使用满表 (deferred clear)
+            codes.append((clear, state['size']))
+            reset()
+        if mode == 'often' and R.random() < 0.01:
+            codes.append((clear, state['size']))
+            reset()
+        w = (p,)
+    codes.append((state['table'][w], state['size']))
+    codes.append((eof, state['size']))
+    return codes
+
+
+def pack(codes):
+    bits = 0
+    n = 0
+    data = bytearray()
+    for code, size in codes:
+        bits |= code << n
+        n += size
+        while n >= 8:
+            data.append(bits & 255)
+            bits >>= 8
+            n -= 8
+    if n:
+        data.append(bits & 255)
+    return bytes(data)
+
+
+def blocks(data):
+    out = bytearray()
+    i = 0
+    while i < len(data):
+        k = R.choice([255, 255, 254, R.randint(1, 255), 1, 7, 8, 9])
+        k = min(k, len(data) - i)
+        out.append(k)
+        out += data[i:i + k]
+        i += k
+    out.append(0)
+    return bytes(out)
+
+
+def pattern(w, h, ncol):
+    kind = R.choice(['noise', 'runs', 'grad', 'flat', 'stripes', 'mixed'])
+    px = []
+    if kind == 'noise':
+        px = [R.randrange(ncol) for _ in range(w * h)]
+    elif kind == 'flat':
+        px = [R.randrange(ncol)] * (w * h)
+    elif kind == 'grad':
+        px = [(x * ncol // max(w, 1) + y) % ncol for y in range(h) for x in range(w)]
+    elif kind == 'stripes':
+        px = [(x // 3 + y // 5) % ncol for y in range(h) for x in range(w)]
+    elif kind == 'runs':
+        while len(px) < w * h:
+            px += [R.randrange(ncol)] * R.randint(1, 300)
+    else:
+        while len(px) < w * h:
+            if R.random() < 0.5:
+                px += [R.randrange(ncol) for _ in range(R.randint(1, 50))]
+            else:
+                px += [R.randrange(ncol)] * R.randint(1, 500)
+    return px[:w * h]
+
+
+def interlace_order(px, w, h):
+    rows = [px[y * w:(y + 1) * w] for y in range(h)]
+    out = []
+    for offset, step in ((0, 8), (4, 8), (2, 4), (1, 2)):
+        for y in range(offset, h, step):
+            out += rows[y]
+    return out
+
+
+def valid():
+    sw, sh = R.choice([(1, 1), (3, 2), (16, 16), (100, 37), (320, 240), (257, 3), (640, 480)])
+    bpp = R.randint(1, 8)
+    g = bytearray(b'GIF89a' + struct.pack('<HHBBB', sw, sh, 0x80 | (bpp - 1), 0, 0))
+    g += bytes(R.randrange(256) for _ in range(3 * (1 << bpp)))
+    for _ in range(R.randint(1, 4)):
+        w = R.randint(1, sw)
+        h = R.randint(1, sh)
+        x = R.randint(0, sw - w)
+        y = R.randint(0, sh - h)
+        interlace = R.random() < 0.3
+        g += b'\x21\xf9\x04' + bytes([R.randrange(16), R.randrange(256), 0, R.randrange(256)]) + b'\x00'
+        g += b'\x2c' + struct.pack('<HHHHB', x, y, w, h, 0x40 if interlace else 0)
+        mcs = max(2, bpp) if R.random() < 0.9 else R.randint(1, 8)
+        px = pattern(w, h, min(1 << mcs, 1 << bpp))
+        if interlace:
+            px = interlace_order(px, w, h)
+        codes = lzw(px, mcs, R.choice(['clear', 'noclear', 'often', 'rand']))
+        g.append(mcs)
+        g += blocks(pack(codes))
+    g.append(0x3b)
+    return bytes(g)
+
+
+def mutate(data):
+    b = bytearray(data)
+    for _ in range(R.randint(1, 6)):
+        op = R.random()
+        i = R.randrange(len(b))
+        if op < 0.5:
+            b[i] = R.randrange(256)
+        elif op < 0.7:
+            b[i] ^= 1 << R.randrange(8)
+        elif op < 0.85:
+            b = b[:i]
+        else:
+            b[i:i] = bytes(R.randrange(256) for _ in range(R.randint(1, 40)))
+        if not b:
+            break
+    return bytes(b)
+
+
+def garbage():
+    sw, sh = R.randint(1, 200), R.randint(1, 200)
+    mcs = R.randint(0, 9)
+    g = bytearray(b'GIF89a' + struct.pack('<HHBBB', sw, sh, 0x80 | 7, 0, 0)) + bytes(768)
+    g += b'\x2c' + struct.pack('<HHHHB', 0, 0, sw, sh, 0x40 if R.random() < 0.3 else 0)
+    g.append(mcs)
+    data = bytes(R.randrange(256) if R.random() < 0.7 else 0 for _ in range(R.randint(0, 3000)))
+    g += blocks(data) if R.random() < 0.8 else data
+    g.append(0x3b)
+    return bytes(g)
+
+
+def write(name, data):
+    with open(os.path.join(OUT, name), 'wb') as f:
+        f.write(data)
+
+
+os.makedirs(OUT, exist_ok=True)
+for k in range(COUNT):
+    source = valid()
+    write('v%d.gif' % k, source)
+    for m in range(3):
+        write('m%d_%d.gif' % (k, m), mutate(source))
+    write('g%d.gif' % k, garbage())
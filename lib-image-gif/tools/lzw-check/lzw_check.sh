@@ -0,0 +1,46 @@
+#!/usr/bin/env bash
+# 校验当前 giflib 的 LZW 解码与基准版本逐位一致.
+#
+# 分别用工作区与 <base-rev> 中的 giflib 编译 lzw_dump, 对生成的语料与额外传入的 gif 文件
+# 以整帧 (DGifSlurp) 与逐行 (DGifGetLine) 两种方式解码, 比较各帧像素哈希, 错误码与读取位置.
+#
+# usage: lzw_check.sh [<base-rev>] [gif file...]
+#   base-rev 默认为 HEAD, 修改解码器前后均可运行; 环境变量 SEED/COUNT 控制生成的语料
+set -euo pipefail
+
+TOOL_DIR="$(cd "$(dirname "$0")" && pwd)"
+REPO_DIR="$(git -C "$TOOL_DIR" rev-parse --show-toplevel)"
+GIFLIB_PATH="lib-image-gif/src/main/cpp/giflib"
+BASE_REV="${1:-HEAD}"
+shift || true
+CC="${CC:-cc}"
+SEED="${SEED:-1}"
+COUNT="${COUNT:-300}"
+
+WORK_DIR="$(mktemp -d)"
+trap 'rm -rf "$WORK_DIR"' EXIT
+
+mkdir -p "$WORK_DIR/base"
+git -C "$REPO_DIR" archive "$BASE_REV" "$GIFLIB_PATH" | tar -x -C "$WORK_DIR/base"
+
+build() {
+    local giflib="$1" output="$2"
+    "$CC" -O1 -w -I"$giflib" -o "$output" "$TOOL_DIR/lzw_dump.c" "$giflib"/*.c
+}
+build "$WORK_DIR/base/$GIFLIB_PATH" "$WORK_DIR/dump_base"
+build "$REPO_DIR/$GIFLIB_PATH" "$WORK_DIR/dump_head"
+
+python3 "$TOOL_DIR/gen_corpus.py" "$SEED" "$WORK_DIR/corpus" "$COUNT"
+FILES=("$WORK_DIR"/corpus/*.gif "$@")
+
+status=0
+for mode in slurp line; do
+    "$WORK_DIR/dump_base" "$mode" "${FILES[@]}" > "$WORK_DIR/$mode.base"
+    "$WORK_DIR/dump_head" "$mode" "${FILES[@]}" > "$WORK_DIR/$mode.head"
+    if diff -u "$WORK_DIR/$mode.base" "$WORK_DIR/$mode.head" | sed "s#$WORK_DIR/##g"; then
+        echo "$mode: ${#FILES[@]} files identical to $BASE_REV"
+    else
+        status=1
+    fi
+done
+exit $status
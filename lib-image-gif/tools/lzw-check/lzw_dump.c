@@ -0,0 +1,164 @@
+/*
+ * 逐个解码 gif 文件, 每个文件输出一行: 各帧像素的 FNV-1a 哈希, 结束时的错误码与读取到的位置.
+ * 只使用各版本 giflib 都有的公开接口, 以便新旧解码器的输出可以直接 diff.
+ *
+ * usage: lzw_dump slurp|line file...
+ *   slurp: DGifSlurp 整帧解码
+ *   line:  DGifGetLine 逐行解码
+ */
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include "gif_lib.h"
+
+typedef struct {
+    const GifByteType *data;
+    size_t size, pos;
+} MemorySource;
+
+static int memoryReader(GifFileType *gif, GifByteType *out, int size) {
+    MemorySource *source = (MemorySource *) gif->UserData;
+    size_t count = source->size - source->pos;
+    if ((size_t) size < count) {
+        count = (size_t) size;
+    }
+    memcpy(out, source->data + source->pos, count);
+    source->pos += count;
+    return (int) count;
+}
+
+static unsigned long long hashPixels(const GifPixelType *pixels, size_t count) {
+    unsigned long long hash = 1469598103934665603ULL;
+    size_t i;
+    for (i = 0; i < count; i++) {
+        hash ^= pixels[i];
+        hash *= 1099511628211ULL;
+    }
+    return hash;
+}
+
+static void dumpSlurp(GifFileType *gif) {
+    int result = DGifSlurp(gif);
+    // 出错时最后一帧可能只解码了一部分, 其内容与实现有关, 不参与比较
+    int complete = result == GIF_OK ? gif->ImageCount : gif->ImageCount - 1;
+    int i;
+    for (i = 0; i < complete; i++) {
+        const SavedImage *image = &gif->SavedImages[i];
+        if (image->RasterBits == NULL) {
+            continue;
+        }
+        printf(" %llx", hashPixels(image->RasterBits,
+                                   (size_t) image->ImageDesc.Width * image->ImageDesc.Height));
+    }
+    printf(" frames=%d r=%d", gif->ImageCount, result);
+}
+
+static int readLines(GifFileType *gif, GifPixelType *raster) {
+    static const int interlacedOffset[] = {0, 4, 2, 1};
+    static const int interlacedJumps[] = {8, 8, 4, 2};
+    const int width = gif->Image.Width, height = gif->Image.Height;
+    int i, y;
+    if (!gif->Image.Interlace) {
+        for (y = 0; y < height; y++) {
+            if (DGifGetLine(gif, raster + (size_t) y * width, width) == GIF_ERROR) {
+                return GIF_ERROR;
+            }
+        }
+        return GIF_OK;
+    }
+    for (i = 0; i < 4; i++) {
+        for (y = interlacedOffset[i]; y < height; y += interlacedJumps[i]) {
+            if (DGifGetLine(gif, raster + (size_t) y * width, width) == GIF_ERROR) {
+                return GIF_ERROR;
+            }
+        }
+    }
+    return GIF_OK;
+}
+
+static void dumpLines(GifFileType *gif) {
+    GifRecordType recordType;
+    GifByteType *extension;
+    GifPixelType *raster;
+    int extensionCode, result = GIF_OK, frames = 0;
+    do {
+        if (DGifGetRecordType(gif, &recordType) == GIF_ERROR) {
+            result = GIF_ERROR;
+            break;
+        }
+        if (recordType == IMAGE_DESC_RECORD_TYPE) {
+            if (DGifGetImageDesc(gif) == GIF_ERROR || gif->Image.Width <= 0 || gif->Image.Height <= 0) {
+                result = GIF_ERROR;
+                break;
+            }
+            raster = (GifPixelType *) malloc((size_t) gif->Image.Width * gif->Image.Height);
+            if (raster == NULL) {
+                result = GIF_ERROR;
+                break;
+            }
+            result = readLines(gif, raster);
+            if (result == GIF_OK) {
+                printf(" %llx", hashPixels(raster, (size_t) gif->Image.Width * gif->Image.Height));
+                frames++;
+            }
+            free(raster);
+        } else if (recordType == EXTENSION_RECORD_TYPE) {
+            result = DGifGetExtension(gif, &extensionCode, &extension);
+            while (result == GIF_OK && extension != NULL) {
+                result = DGifGetExtensionNext(gif, &extension);
+            }
+        }
+    } while (result == GIF_OK && recordType != TERMINATE_RECORD_TYPE);
+    printf(" frames=%d r=%d", frames, result);
+}
+
+int main(int argc, char **argv) {
+    int lineMode, i, error;
+    if (argc < 2 || (strcmp(argv[1], "slurp") != 0 && strcmp(argv[1], "line") != 0)) {
+        fprintf(stderr, "usage: %s slurp|line file...\n", argv[0]);
+        return 2;
+    }
+    lineMode = strcmp(argv[1], "line") == 0;
+    for (i = 2; i < argc; i++) {
+        MemorySource source;
+        GifByteType *data;
+        GifFileType *gif;
+        long size;
+        FILE *file = fopen(argv[i], "rb");
+        if (file == NULL) {
+            printf("%s: missing\n", argv[i]);
+            continue;
+        }
+        fseek(file, 0, SEEK_END);
+        size = ftell(file);
+        fseek(file, 0, SEEK_SET);
+        data = (GifByteType *) malloc(size > 0 ? (size_t) size : 1);
+        if (data == NULL || fread(data, 1, (size_t) size, file) != (size_t) size) {
+            printf("%s: unreadable\n", argv[i]);
+            fclose(file);
+            free(data);
+            continue;
+        }
+        fclose(file);
+
+        source.data = data;
+        source.size = (size_t) size;
+        source.pos = 0;
+        printf("%s:", argv[i]);
+        gif = DGifOpen(&source, memoryReader, &error);
+        if (gif == NULL) {
+            printf(" open e=%d\n", error);
+            free(data);
+            continue;
+        }
+        if (lineMode) {
+            dumpLines(gif);
+        } else {
+            dumpSlurp(gif);
+        }
+        printf(" e=%d pos=%zu\n", gif->Error, source.pos);
+        DGifCloseFile(gif, &error);
+        free(data);
+    }
+    return 0;
+}